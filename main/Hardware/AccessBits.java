@@ -0,0 +1,54 @@
+package Hardware;
+
+// Bits de acesso por frame (Page.REFERENCED / Page.DIRTY): a CPU liga, o SO colhe e limpa.
+// Guardados em blocos de BLOCK frames, criados quando o SO entrega um frame do bloco (reserve):
+// frames nunca usados nao ocupam memoria do hospedeiro. Marcar e um OR num byte, sem lock; uma
+// marca perdida na corrida com a limpeza do amostrador so atrasa a contagem.
+public class AccessBits {
+    public static final int BLOCK_SHIFT = 12;
+    private static final int BLOCK = 1 << BLOCK_SHIFT;
+    private static final int MASK = BLOCK - 1;
+
+    private final int frames;
+    private final byte[][] blocks; // null = nenhum frame do bloco foi entregue ainda
+
+    public AccessBits(int frames) {
+        this.frames = frames;
+        this.blocks = new byte[(frames + BLOCK - 1) >>> BLOCK_SHIFT][];
+    }
+
+    public int frames() {
+        return frames;
+    }
+
+    // cria o bloco do frame (o SO chama ao entregar o frame, antes de a CPU acessa-lo)
+    public synchronized void reserve(int frame) {
+        if (blocks[frame >>> BLOCK_SHIFT] == null) {
+            blocks[frame >>> BLOCK_SHIFT] = new byte[BLOCK];
+        }
+    }
+
+    public void mark(int frame, int bits) {
+        byte[] b = blocks[frame >>> BLOCK_SHIFT];
+        if (b != null) {
+            b[frame & MASK] |= bits;
+        }
+    }
+
+    public int get(int frame) {
+        byte[] b = blocks[frame >>> BLOCK_SHIFT];
+        return b == null ? 0 : b[frame & MASK];
+    }
+
+    public void set(int frame, int bits) {
+        byte[] b = blocks[frame >>> BLOCK_SHIFT];
+        if (b == null) {
+            if (bits == 0) {
+                return;
+            }
+            reserve(frame);
+            b = blocks[frame >>> BLOCK_SHIFT];
+        }
+        b[frame & MASK] = (byte) bits;
+    }
+}
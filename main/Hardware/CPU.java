@@ -6,18 +6,20 @@ import Software.*;
 import Software.Opcode;
 
 public class CPU {
-    private int maxInt; // valores maximo e minimo para inteiros nesta cpu
-    private int minInt;
+    public static final int MAX_INT = 32767;  // capacidade de representacao modelada:
+    public static final int MIN_INT = -32767; // se exceder deve gerar interrupcao de overflow
+    private static final long INT_RANGE = (long) MAX_INT - MIN_INT;
+    private int overflow;   // != 0: alguma operacao da instrucao corrente saiu da faixa
                         // CONTEXTO da CPU ...
     public int pc;     // ... composto de program counter,
-    private Word ir;    // instruction register,
-    public int[] reg;  // registradores da CPU
-    private Interrupts irpt; // durante instrucao, interrupcao pode ser sinalizada
+    private long ir;   // instruction register: a palavra buscada, empacotada como na Memory (campos via Memory.word*),
+    public int[] reg;  // registradores da CPU: o array do contexto carregado
+    private CpuContext ctx = new CpuContext(); // contexto carregado (pc salvo e registradores)
+    private final InterruptController ic = new InterruptController(); // durante instrucao, interrupcao pode ser sinalizada
                         // FIM CONTEXTO DA CPU: tudo que precisa sobre o estado de um processo para
                         // executa-lo
                         // nas proximas versoes isto pode modificar
 
-    private Word[] m;   // m é o array de memória "física", CPU tem uma ref a m para acessar
 
     private InterruptHandling ih;    // significa desvio para rotinas de tratamento de Int - se int ligada, desvia
     private SysCallHandling sysCall; // significa desvio para tratamento de chamadas de sistema
@@ -29,11 +31,30 @@ public class CPU {
     private boolean debug;      // se true entao mostra cada instrucao em execucao
     private Utilities u;        // para debug (dump)
     private List<Page> processPage;
+    private Memory mem;
+                                // MMU: tamanho de pagina base e, por contexto, a regiao de paginas grandes
+    private int pageSize = 8;
+    private int pageShift = 3;  // log2(pageSize), ou -1 se pageSize nao for potencia de 2
+    private int hugeCount;      // paginas grandes no inicio da tabela do processo
+    private int hugeSize;       // tamanho de cada pagina grande
+    private int hugeLimit;      // enderecos logicos < hugeLimit caem nas paginas grandes
+                                // relogio simulado: cada instrucao buscada soma o seu custo em ciclos
+    public long cycles;         // ciclos executados por esta CPU desde a criacao
+    public long instructions;   // instrucoes buscadas por esta CPU desde a criacao
+    private CycleCosts costs = new CycleCosts();
+    private int[] cost = costs.table();
+    private long quantumEnd = Long.MAX_VALUE; // ao atingir, levanta intTimer (fatia em ciclos simulados)
+    private long budgetEnd = Long.MAX_VALUE;  // ao atingir, levanta intQuota (orcamento do processo)
+    private long nextEvent = Long.MAX_VALUE;  // o menor dos dois: um so teste por instrucao
+    private Cache cache;        // L1 opcional entre a CPU e a memoria (null = acesso direto)
+    private CacheStats cacheStats = new CacheStats(); // contadores do processo em execucao
+    private AccessBits accessBits; // bits R/D por frame, compartilhados entre os nucleos (null = sem registro)
+    private long[] code;        // palavras do bloco de memoria do ultimo fetch (Memory.chunkWords)
+    private int codeChunk = -1; // indice desse bloco
+    private int codeLayout;     // Memory.layout() quando foi guardado
     public CPU(Memory _mem, boolean _debug) { // ref a MEMORIA passada na criacao da CPU
-        maxInt = 32767;            // capacidade de representacao modelada
-        minInt = -32767;           // se exceder deve gerar interrupcao de overflow
-        m = _mem.pos;              // usa o atributo 'm' para acessar a memoria, só para ficar mais pratico
-        reg = new int[10];         // aloca o espaço dos registradores - regs 8 e 9 usados somente para IO
+        mem = _mem;
+        reg = ctx.reg;             // registradores do contexto inicial - regs 8 e 9 usados somente para IO
 
         debug = _debug;            // se true, print da instrucao em execucao
 
@@ -48,56 +69,269 @@ public class CPU {
         u = _u;                     // aponta para rotinas utilitárias - fazer dump da memória na tela
     }
 
+    // cria outro nucleo sobre a mesma memoria e com as mesmas rotinas de tratamento,
+    // mas com contexto (pc, registradores, paginas) proprio
+    public CPU newCore(boolean _debug) {
+        CPU core = new CPU(mem, _debug);
+        core.setPageSize(pageSize);
+        core.setAddressOfHandlers(ih, sysCall);
+        core.setUtilities(u);
+        core.setCycleCosts(costs);
+        core.setCache(cache == null ? null : cache.privateCopy()); // L1 privada, L2 compartilhada
+        core.setAccessBits(accessBits);
+        return core;
+    }
 
-                                   // verificação de enderecamento 
-    private boolean legal(int e) { // todo acesso a memoria tem que ser verificado se é válido - 
-                                   // aqui no caso se o endereco é um endereco valido em toda memoria
-        if (e >= 0 && e < m.length) {
-            return true;
-        } else {
-            irpt = Interrupts.intEnderecoInvalido;    // se nao for liga interrupcao no meio da exec da instrucao
-            return false;
+    public void setPageSize(int _pageSize) {
+        pageSize = _pageSize;
+        pageShift = Integer.bitCount(_pageSize) == 1 ? Integer.numberOfTrailingZeros(_pageSize) : -1;
+    }
+
+    public void setCycleCosts(CycleCosts _costs) { // tabela compartilhada entre os nucleos
+        costs = _costs;
+        cost = _costs.table();
+    }
+
+    public CycleCosts getCycleCosts() {
+        return costs;
+    }
+
+    public void setCache(Cache _cache) {
+        cache = _cache;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCacheStats(CacheStats _stats) { // contadores de quem vai rodar
+        cacheStats = _stats;
+    }
+
+    public void setAccessBits(AccessBits _bits) { // ver Page.REFERENCED e Page.DIRTY
+        accessBits = _bits;
+    }
+
+    // marca o frame do acesso como referenciado (e sujo, se escrita)
+    private void touch(int physAddr, boolean write) {
+        if (accessBits != null) {
+            int frame = pageShift >= 0 ? physAddr >> pageShift : physAddr / pageSize;
+            accessBits.mark(frame, write ? Page.REFERENCED | Page.DIRTY : Page.REFERENCED);
         }
     }
 
-    private boolean testOverflow(int v) {             // toda operacao matematica deve avaliar se ocorre overflow
-        if ((v < minInt) || (v > maxInt)) {
-            irpt = Interrupts.intOverflow;            // se houver liga interrupcao no meio da exec da instrucao
-            return false;
+    // acesso a memoria fisica ja traduzido passa pela cache, se houver; falhas custam ciclos
+    private void cached(int physAddr, boolean write) {
+        touch(physAddr, write);
+        if (cache != null) {
+            cycles += cache.access(physAddr, write, cacheStats);
         }
-        ;
-        return true;
     }
 
-    public void setInterupt(Interrupts irpt){
-        this.irpt = irpt;
+    // Fatia de tempo em ciclos simulados: intTimer quando a CPU tiver executado mais 'quantum'
+    // ciclos. quantum <= 0 desarma.
+    public void armQuantum(long quantum) {
+        quantumEnd = quantum > 0 ? cycles + quantum : Long.MAX_VALUE;
+        nextEvent = Math.min(quantumEnd, budgetEnd);
+    }
+
+    // Orcamento de ciclos do processo carregado: intQuota quando executar mais 'left' ciclos.
+    // Long.MAX_VALUE desarma.
+    public void armBudget(long left) {
+        budgetEnd = left == Long.MAX_VALUE ? Long.MAX_VALUE : cycles + Math.max(left, 0);
+        nextEvent = Math.min(quantumEnd, budgetEnd);
+    }
+
+    public void setDebug(boolean _debug) { // liga/desliga o print de cada instrucao
+        debug = _debug;
+    }
+
+    public void stop() {           // pedido de parada vindo do SO (ex.: processo bloqueou numa syscall)
+        cpuStop = true;
+    }
+
+
+    // Toda operacao matematica avalia overflow sobre o resultado exato (em long: soma, subtracao e
+    // produto de dois int nunca estouram um long). Sem desvio: x = v - MIN_INT fora de [0, INT_RANGE]
+    // deixa negativo x ou INT_RANGE - x, e o bit de sinal vai para a flag. A interrupcao e levantada
+    // uma vez, no fim do ciclo.
+    private int arith(long v) {
+        long x = v - MIN_INT;
+        overflow |= (int) ((x | (INT_RANGE - x)) >>> 63);
+        return (int) v;
+    }
+
+    public void setInterupt(Interrupts irpt){      // pode ser chamado de qualquer thread
+        ic.raise(irpt);
+    }
+
+    public InterruptController getInterruptController() {
+        return ic;
     }
 
     public void setContext(List<Page> _processPage, int pcCotnext) {                 // usado para setar o contexto da cpu para rodar um processo
-        processPage = _processPage;                                       // [ nesta versao é somente colocar o PC na posicao 0 ]
-        pc = pcCotnext;                                     // pc cfe endereco logico
-        irpt = Interrupts.noInterrupt;                // reset da interrupcao registrada
+        ctx.pages = null;                                                 // tabela sempre redecodificada
+        ctx.pc = pcCotnext;                                               // pc cfe endereco logico
+        switchTo(ctx, _processPage);
+    }
+
+    // Troca de contexto sem copia: passa a executar sobre o contexto 'c' (registradores dele) e a
+    // tabela 'pages'. A decodificacao da tabela fica guardada no contexto e so e refeita se a lista mudou.
+    public void switchTo(CpuContext c, List<Page> pages) {
+        ctx = c;
+        reg = c.reg;
+        pc = c.pc;
+        if (c.pages != pages) {
+            c.map(pages, pageSize);
+        }
+        processPage = pages;
+        hugeCount = c.hugeCount;
+        hugeSize = c.hugeSize;
+        hugeLimit = c.hugeLimit;
+        ic.clear(~Interrupts.intIO.bit());            // reset das interrupcoes do processo anterior; E/S e do sistema
     }
 
+    // Unica verificacao de endereco da CPU: o endereco logico tem que estar no espaco do processo,
+    // [0, tamanho logico). Fora dele levanta intEnderecoInvalido e retorna -1.
     public int getMemAddr(int logicalAddr) {
-        //calcula página
-        int pageIndex = logicalAddr / 8;
-        //calcula o offset dentro da pagina
-        int offset = logicalAddr % 8;
-
-        // verifica se o endereço é válido
-        if (pageIndex >= processPage.size()) {
-            irpt = Interrupts.intEnderecoInvalido;
+        int logicalSize = hugeLimit + (processPage.size() - hugeCount) * pageSize; // tabela pode crescer (memoria compartilhada)
+        if (Integer.compareUnsigned(logicalAddr, logicalSize) >= 0) { // negativo vira enorme: um so teste
+            ic.raise(Interrupts.intEnderecoInvalido);
             return -1;
         }
+        return translate(logicalAddr);
+    }
 
-        // pega o enderoço fisico
-        return processPage.get(pageIndex).pageStart + offset;
+    // Verificacao unica de um bloco [logicalAddr, logicalAddr + len): todo ele no espaco do processo,
+    // atravessando quantas paginas for. Fora dele (ou len negativo) levanta intEnderecoInvalido.
+    private boolean blockInRange(int logicalAddr, int len) {
+        int logicalSize = hugeLimit + (processPage.size() - hugeCount) * pageSize;
+        if (len < 0 || logicalAddr < 0 || (long) logicalAddr + len > logicalSize) {
+            ic.raise(Interrupts.intEnderecoInvalido);
+            return false;
+        }
+        return true;
+    }
+
+    // deslocamento de logicalAddr dentro da sua pagina (grande ou base)
+    private int pageOffset(int logicalAddr) {
+        if (logicalAddr < hugeLimit) {
+            return logicalAddr % hugeSize;
+        }
+        int rel = logicalAddr - hugeLimit;
+        return pageShift >= 0 ? rel & (pageSize - 1) : rel % pageSize;
+    }
+
+    private int pageLength(int logicalAddr) {
+        return logicalAddr < hugeLimit ? hugeSize : pageSize;
+    }
+
+    // BMOVE: copia n palavras de src para dst (enderecos logicos ja verificados). O bloco e dividido
+    // em trechos que nao cruzam pagina nem na origem nem no destino; cada trecho e fisicamente
+    // contiguo e copiado num laco direto, sem traduzir nem verificar palavra a palavra. Com
+    // sobreposicao e dst depois de src, copia do fim para o inicio (semantica de memmove).
+    private void blockMove(int src, int dst, int n) {
+        cycles += (long) n * CycleCosts.BLOCK_WORD;
+        if (dst > src && dst < src + n) {
+            while (n > 0) {
+                int run = Math.min(n, Math.min(pageOffset(src + n - 1), pageOffset(dst + n - 1)) + 1);
+                n -= run;
+                copyRun(translate(src + n), translate(dst + n), run);
+            }
+        } else {
+            while (n > 0) {
+                int run = Math.min(n, Math.min(pageLength(src) - pageOffset(src), pageLength(dst) - pageOffset(dst)));
+                copyRun(translate(src), translate(dst), run);
+                src += run;
+                dst += run;
+                n -= run;
+            }
+        }
+    }
+
+    // trecho fisicamente contiguo: copia em bloco nos arrays da memoria (Memory.copy)
+    private void copyRun(int from, int to, int run) {
+        accessRun(from, run, false);
+        accessRun(to, run, true);
+        mem.copy(from, to, run);
+    }
+
+    // BFILL: n palavras a partir de dst viram DATA com o valor v, como um STD por palavra
+    private void blockFill(int dst, int v, int n) {
+        cycles += (long) n * CycleCosts.BLOCK_WORD;
+        while (n > 0) {
+            int run = Math.min(n, pageLength(dst) - pageOffset(dst));
+            int to = translate(dst);
+            accessRun(to, run, true);
+            mem.fill(to, run, v);
+            dst += run;
+            n -= run;
+        }
+    }
+
+    // trecho fisico contiguo: cache palavra a palavra (se houver) e bits de acesso uma vez por frame
+    private void accessRun(int physAddr, int run, boolean write) {
+        if (cache != null) {
+            for (int a = physAddr; a < physAddr + run; a++) {
+                cycles += cache.access(a, write, cacheStats);
+            }
+        }
+        if (accessBits != null) {
+            for (int f = physAddr / pageSize; f <= (physAddr + run - 1) / pageSize; f++) {
+                accessBits.mark(f, write ? Page.REFERENCED | Page.DIRTY : Page.REFERENCED);
+            }
+        }
+    }
+
+    // traducao de um endereco logico ja verificado
+    private int translate(int logicalAddr) {
+        if (logicalAddr < hugeLimit) {
+            // regiao de paginas grandes
+            return processPage.get(logicalAddr / hugeSize).pageStart + logicalAddr % hugeSize;
+        }
+        int rel = logicalAddr - hugeLimit;
+        if (pageShift >= 0) {
+            //calcula página e o offset dentro da pagina (potencia de 2: shift e mascara)
+            return processPage.get(hugeCount + (rel >> pageShift)).pageStart + (rel & (pageSize - 1));
+        }
+        return processPage.get(hugeCount + rel / pageSize).pageStart + rel % pageSize;
+    }
+
+    // Busca no array do bloco da memoria onde esta o pc, guardado entre instrucoes: sem consulta a
+    // tabela de blocos enquanto o pc ficar no mesmo bloco e a memoria nao criar blocos
+    private long fetch(int memadd) {
+        if (memadd >>> Memory.CHUNK_SHIFT != codeChunk || mem.layout() != codeLayout) {
+            codeLayout = mem.layout();
+            code = mem.chunkWords(memadd);
+            codeChunk = memadd >>> Memory.CHUNK_SHIFT;
+        }
+        return code[memadd & (Memory.CHUNK - 1)];
+    }
+
+    // endereco direto (p) de uma instrucao: verificado na carga ou agora
+    private int direct(int p, boolean verified) {
+        return verified ? translate(p) : getMemAddr(p);
+    }
+
+    // Decodificacao na carga: marca as instrucoes cujo endereco direto (dado em LDD/STD/JMP*M ou
+    // destino constante de JMP*K/JMP/JMPIGT) cabe no espaco logico do processo; a CPU nao os
+    // reverifica. STD/STX sobre uma instrucao a tornam DATA, entao a marca continua valida.
+    public static void verify(Word w, int logicalSize) {
+        switch (w.opc) {
+            case LDD: case STD: case JMPIM: case JMPIGM: case JMPILM: case JMPIEM:
+            case JMP: case JMPIGK: case JMPILK: case JMPIEK: case JMPIGT:
+                w.verified = w.p >= 0 && w.p < logicalSize;
+                break;
+            default:
+                w.verified = false;
+        }
     }
 
     public void run() {                               // execucao da CPU supoe que o contexto da CPU, vide acima,
                                                         // esta devidamente setado
         cpuStop = false;
+        int addr;               // endereco fisico traduzido do acesso a memoria da instrucao corrente
+        boolean pcVerified = false; // pc veio de um desvio com destino verificado na carga
         while (!cpuStop) {      // ciclo de instrucoes. acaba cfe resultado da exec da instrucao, veja cada caso.
             //try {
             //     Thread.sleep(500);
@@ -106,9 +340,16 @@ public class CPU {
             // }
             // --------------------------------------------------------------------------------------------------
             // FASE DE FETCH
-            if (legal(pc)) { // pc valido
-                var memadd = getMemAddr(pc);
-                ir = m[memadd];  // <<<<<<<<<<<< AQUI faz FETCH - busca posicao da memoria apontada por pc, guarda em ir
+            int memadd = pcVerified ? translate(pc) : getMemAddr(pc);
+            pcVerified = false;
+            if (memadd >= 0) { // pc valido
+                ir = fetch(memadd);  // <<<<<<<<<<<< AQUI faz FETCH - busca posicao da memoria apontada por pc, guarda em ir
+                int ra = Memory.wordRa(ir);   // decodificacao: campos direto do long, sem passar por uma Word
+                int rb = Memory.wordRb(ir);
+                int p = Memory.wordP(ir);
+                instructions++;
+                cycles += cost[Memory.wordOpcode(ir)];
+                cached(memadd, false);
                              // resto é dump de debug
                 if (debug) {
                     System.out.print("                                              regs: ");
@@ -120,187 +361,235 @@ public class CPU {
                 }
                 if (debug) {
                     System.out.print("                      pc: " + pc + "       exec: ");
-                    u.dump(ir);
+                    u.dump(mem.get(memadd));
                 }
 
             // --------------------------------------------------------------------------------------------------
             // FASE DE EXECUCAO DA INSTRUCAO CARREGADA NO ir
-                switch (ir.opc) {       // conforme o opcode (código de operação) executa
+                switch (Memory.OPCODES[Memory.wordOpcode(ir)]) {       // conforme o opcode (código de operação) executa
 
                     // Instrucoes de Busca e Armazenamento em Memoria
                     case LDI: // Rd ← k        veja a tabela de instrucoes do HW simulado para entender a semantica da instrucao
-                        reg[ir.ra] = ir.p;
+                        reg[ra] = p;
                         pc++;
                         break;
                     case LDD: // Rd <- [A]
-                        if (legal(ir.p)) {
-                            reg[ir.ra] = m[getMemAddr(ir.p)].p;
+                        if ((addr = direct(p, Memory.wordVerified(ir))) >= 0) {
+                            cached(addr, false);
+                            reg[ra] = mem.p(addr);
                             pc++;
                         }
                         break;
                     case LDX: // RD <- [RS] // NOVA
-                        if (legal(reg[ir.rb])) {
-                            reg[ir.ra] = m[getMemAddr(reg[ir.rb])].p;
+                        if ((addr = getMemAddr(reg[rb])) >= 0) {
+                            cached(addr, false);
+                            reg[ra] = mem.p(addr);
                             pc++;
                         }
                         break;
                     case STD: // [A] ← Rs
-                        if (legal(ir.p)) {
-                            m[getMemAddr(ir.p)].opc = Opcode.DATA;
-                            m[getMemAddr(ir.p)].p = reg[ir.ra];
+                        if ((addr = direct(p, Memory.wordVerified(ir))) >= 0) {
+                            cached(addr, true);
+                            mem.store(addr, reg[ra]);
                             pc++;
                             if (debug) 
                                 {   System.out.print("                                  ");   
-                                    u.dump(ir.p,ir.p+1);							
+                                    u.dump(p,p+1);							
                                 }
                             }
                         break;
                     case STX: // [Rd] ←Rs
-                        if (legal(reg[ir.ra])) {
-                            m[getMemAddr(reg[ir.ra])].opc = Opcode.DATA;
-                            m[getMemAddr(reg[ir.ra])].p = reg[ir.rb];
+                        if ((addr = getMemAddr(reg[ra])) >= 0) {
+                            cached(addr, true);
+                            mem.store(addr, reg[rb]);
                             pc++;
                         }
                         ;
                         break;
+                    case CAS: // if [Rs] = Rd then [Rs] <- R(k); Rd <- valor antigo de [Rs]   (atomica entre CPUs)
+                        if (p < 0 || p >= reg.length) {
+                            ic.raise(Interrupts.intInstrucaoInvalida);
+                        } else if ((addr = getMemAddr(reg[rb])) >= 0) {
+                            touch(addr, true);
+                            // outros nucleos (modo GUEST_THREADS) podem disputar a mesma palavra
+                            reg[ra] = mem.compareAndSet(addr, reg[ra], reg[p]);
+                            pc++;
+                        }
+                        break;
+                    // Instrucoes de bloco: Rn = registrador indicado em p. O bloco inteiro, origem e destino,
+                    // e verificado antes de qualquer escrita: em falta nada muda (memoria, registradores,
+                    // pc) e a interrupcao aponta para a propria instrucao. Registradores nao avancam.
+                    case BMOVE: // [Rd .. Rd+Rn) <- [Rs .. Rs+Rn)
+                        if (p < 0 || p >= reg.length) {
+                            ic.raise(Interrupts.intInstrucaoInvalida);
+                        } else if (blockInRange(reg[rb], reg[p]) && blockInRange(reg[ra], reg[p])) {
+                            blockMove(reg[rb], reg[ra], reg[p]);
+                            pc++;
+                        }
+                        break;
+                    case BFILL: // [Rd .. Rd+Rn) <- Rs
+                        if (p < 0 || p >= reg.length) {
+                            ic.raise(Interrupts.intInstrucaoInvalida);
+                        } else if (blockInRange(reg[ra], reg[p])) {
+                            blockFill(reg[ra], reg[rb], reg[p]);
+                            pc++;
+                        }
+                        break;
                     case MOVE: // RD <- RS
-                        reg[ir.ra] = reg[ir.rb];
+                        reg[ra] = reg[rb];
                         pc++;
                         break;
                     // Instrucoes Aritmeticas
                     case ADD: // Rd ← Rd + Rs
-                        reg[ir.ra] = reg[ir.ra] + reg[ir.rb];
-                        testOverflow(reg[ir.ra]);
+                        reg[ra] = arith((long) reg[ra] + reg[rb]);
                         pc++;
                         break;
                     case ADDI: // Rd ← Rd + k
-                        reg[ir.ra] = reg[ir.ra] + ir.p;
-                        testOverflow(reg[ir.ra]);
+                        reg[ra] = arith((long) reg[ra] + p);
                         pc++;
                         break;
                     case SUB: // Rd ← Rd - Rs
-                        reg[ir.ra] = reg[ir.ra] - reg[ir.rb];
-                        testOverflow(reg[ir.ra]);
+                        reg[ra] = arith((long) reg[ra] - reg[rb]);
                         pc++;
                         break;
                     case SUBI: // RD <- RD - k // NOVA
-                        reg[ir.ra] = reg[ir.ra] - ir.p;
-                        testOverflow(reg[ir.ra]);
+                        reg[ra] = arith((long) reg[ra] - p);
                         pc++;
                         break;
                     case MULT: // Rd <- Rd * Rs
-                        reg[ir.ra] = reg[ir.ra] * reg[ir.rb];
-                        testOverflow(reg[ir.ra]);
+                        reg[ra] = arith((long) reg[ra] * reg[rb]);
                         pc++;
                         break;
 
                     // Instrucoes JUMP
                     case JMP: // PC <- k
-                        pc = ir.p;
+                        pc = p;
+                        pcVerified = Memory.wordVerified(ir);
                         break;
                     case JMPIM: // PC <- [A]
-                              pc = m[getMemAddr(ir.p)].p;
+                        if ((addr = direct(p, Memory.wordVerified(ir))) >= 0) {
+                            pc = mem.p(addr);
+                        }
                         break;
                     case JMPIG: // If Rc > 0 Then PC ← Rs Else PC ← PC +1
-                        if (reg[ir.rb] > 0) {
-                            pc = reg[ir.ra];
+                        if (reg[rb] > 0) {
+                            pc = reg[ra];
                         } else {
                             pc++;
                         }
                         break;
                     case JMPIGK: // If RC > 0 then PC <- k else PC++
-                        if (reg[ir.rb] > 0) {
-                            pc = ir.p;
+                        if (reg[rb] > 0) {
+                            pc = p;
+                            pcVerified = Memory.wordVerified(ir);
                         } else {
                             pc++;
                         }
                         break;
                     case JMPILK: // If RC < 0 then PC <- k else PC++
-                        if (reg[ir.rb] < 0) {
-                            pc = ir.p;
+                        if (reg[rb] < 0) {
+                            pc = p;
+                            pcVerified = Memory.wordVerified(ir);
                         } else {
                             pc++;
                         }
                         break;
                     case JMPIEK: // If RC = 0 then PC <- k else PC++
-                        if (reg[ir.rb] == 0) {
-                            pc = ir.p;
+                        if (reg[rb] == 0) {
+                            pc = p;
+                            pcVerified = Memory.wordVerified(ir);
                         } else {
                             pc++;
                         }
                         break;
                     case JMPIL: // if Rc < 0 then PC <- Rs Else PC <- PC +1
-                        if (reg[ir.rb] < 0) {
-                            pc = reg[ir.ra];
+                        if (reg[rb] < 0) {
+                            pc = reg[ra];
                         } else {
                             pc++;
                         }
                         break;
                     case JMPIE: // If Rc = 0 Then PC <- Rs Else PC <- PC +1
-                        if (reg[ir.rb] == 0) {
-                            pc = reg[ir.ra];
+                        if (reg[rb] == 0) {
+                            pc = reg[ra];
                         } else {
                             pc++;
                         }
                         break;
                     case JMPIGM: // If RC > 0 then PC <- [A] else PC++
-                        if (legal(ir.p)){
-                            if (reg[ir.rb] > 0) {
-                               pc = m[getMemAddr(ir.p)].p;
-                            } else {
-                              pc++;
-                           }
+                        if (reg[rb] > 0) {
+                            if ((addr = direct(p, Memory.wordVerified(ir))) >= 0) pc = mem.p(addr);
+                        } else {
+                            pc++;
                         }
                         break;
                     case JMPILM: // If RC < 0 then PC <- k else PC++
-                        if (reg[ir.rb] < 0) {
-                            pc = m[getMemAddr(ir.p)].p;
+                        if (reg[rb] < 0) {
+                            if ((addr = direct(p, Memory.wordVerified(ir))) >= 0) pc = mem.p(addr);
                         } else {
                             pc++;
                         }
                         break;
                     case JMPIEM: // If RC = 0 then PC <- k else PC++
-                        if (reg[ir.rb] == 0) {
-                            pc = m[getMemAddr(ir.p)].p;
+                        if (reg[rb] == 0) {
+                            if ((addr = direct(p, Memory.wordVerified(ir))) >= 0) pc = mem.p(addr);
                         } else {
                             pc++;
                         }
                         break;
                     case JMPIGT: // If RS>RC then PC <- k else PC++
-                        if (reg[ir.ra] > reg[ir.rb]) {
-                            pc = ir.p;
+                        if (reg[ra] > reg[rb]) {
+                            pc = p;
+                            pcVerified = Memory.wordVerified(ir);
                         } else {
                             pc++;
                         }
                         break;
 
                     case DATA: // pc está sobre área supostamente de dados
-                        irpt = Interrupts.intInstrucaoInvalida;
+                        ic.raise(Interrupts.intInstrucaoInvalida);
                         break;
 
                     // Chamadas de sistema
                     case SYSCALL:
-                        sysCall.handle(); // <<<<< aqui desvia para rotina de chamada de sistema, no momento so
+                        pc++;               // avanca antes: se a syscall bloquear, o contexto salvo ja aponta para a proxima
+                        sysCall.handle(this); // <<<<< aqui desvia para rotina de chamada de sistema, no momento so
                                             // temos IO
-                        pc++;
                         break;
 
                     case STOP: // por enquanto, para execucao
-                        sysCall.stop();
+                        sysCall.stop(this);
                         cpuStop = true;
                         break;
 
                     // Inexistente
                     default:
-                        irpt = Interrupts.intInstrucaoInvalida;
+                        ic.raise(Interrupts.intInstrucaoInvalida);
                         break;
                 }
             }
             // --------------------------------------------------------------------------------------------------
             // VERIFICA INTERRUPÇÃO !!! - TERCEIRA FASE DO CICLO DE INSTRUÇÕES
-            if (irpt != Interrupts.noInterrupt) { // existe interrupção
-                ih.handle(irpt);                  // desvia para rotina de tratamento - esta rotina é do SO
-                cpuStop = true;                   // nesta versao, para a CPU
+            if (overflow != 0) {                  // flag acumulada pelas operacoes matematicas da instrucao
+                overflow = 0;
+                ic.raise(Interrupts.intOverflow);
+            }
+            if (cycles >= nextEvent) {            // fatia ou orcamento em ciclos simulados esgotados
+                if (cycles >= budgetEnd) {
+                    budgetEnd = Long.MAX_VALUE;
+                    ic.raise(Interrupts.intQuota);
+                }
+                if (cycles >= quantumEnd) {
+                    quantumEnd = Long.MAX_VALUE;
+                    ic.raise(Interrupts.intTimer);
+                }
+                nextEvent = Math.min(quantumEnd, budgetEnd);
+            }
+            if (ic.hasPending()) {                // existe interrupção
+                int pending = ic.takePending();   // todas as pendentes sao atendidas nesta mesma entrada
+                if (ih.handle(this, pending)) {   // desvia para rotina de tratamento - esta rotina é do SO
+                    cpuStop = true;               // SO pediu parada: processo saiu da CPU
+                }
             }
         } // FIM DO CICLO DE UMA INSTRUÇÃO
     }
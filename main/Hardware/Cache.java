@@ -0,0 +1,169 @@
+package Hardware;
+
+// Modelo de cache set-associativa sobre enderecos fisicos (em palavras), write-back com alocacao
+// na escrita. So modela tempo e contadores: os dados continuam em Memory, entao nao ha
+// coerencia a manter. Cada acesso devolve os ciclos extras que custou alem do custo da instrucao.
+// Substituicao LRU (carimbo por linha) ou PLRU em arvore (ways potencia de 2, um bit por no).
+public class Cache {
+    public enum Policy { LRU, PLRU }
+
+    public static final int L2_LATENCY = 10;     // ciclos para buscar uma linha na L2
+    public static final int MEMORY_LATENCY = 50; // ciclos para buscar uma linha na memoria
+
+    public final int level;      // 0 = L1, 1 = L2
+    public final int sizeWords;
+    public final int lineWords;
+    public final int ways;
+    public final Policy policy;
+    private final Cache next;    // nivel de baixo; null = memoria
+    private final int sets;
+    private final int lineShift;
+    private final int[] tags;    // [set * ways + way]; -1 = linha invalida
+    private final boolean[] dirty;
+    private final long[] stamp;  // LRU: ultimo acesso de cada linha
+    private final int[] tree;    // PLRU: bits da arvore de cada conjunto (no i no bit i, raiz = 1)
+    private long clock;
+    public final CacheStats totals = new CacheStats();
+
+    public Cache(int level, int sizeWords, int lineWords, int ways, Policy policy, Cache next) {
+        if (Integer.bitCount(lineWords) != 1 || ways < 1 || sizeWords % (lineWords * ways) != 0) {
+            throw new IllegalArgumentException("Cache invalida: " + sizeWords + " palavras, linha " + lineWords
+                    + ", " + ways + " vias (linha potencia de 2, tamanho multiplo de linha x vias)");
+        }
+        if (policy == Policy.PLRU && (Integer.bitCount(ways) != 1 || ways > 32)) {
+            throw new IllegalArgumentException("PLRU precisa de vias potencia de 2 (ate 32): " + ways);
+        }
+        this.level = level;
+        this.sizeWords = sizeWords;
+        this.lineWords = lineWords;
+        this.ways = ways;
+        this.policy = policy;
+        this.next = next;
+        this.sets = sizeWords / (lineWords * ways);
+        this.lineShift = Integer.numberOfTrailingZeros(lineWords);
+        this.tags = new int[sets * ways];
+        this.dirty = new boolean[sets * ways];
+        this.stamp = new long[sets * ways];
+        this.tree = new int[sets];
+        java.util.Arrays.fill(tags, -1);
+    }
+
+    // L1 privada de um novo nucleo, com a mesma geometria e a mesma L2
+    public Cache privateCopy() {
+        return new Cache(level, sizeWords, lineWords, ways, policy, next);
+    }
+
+    public Cache next() {
+        return next;
+    }
+
+    // Acessa a palavra fisica 'addr'; conta em 'stats' (do processo) e em totals.
+    // Retorna os ciclos extras: 0 num acerto, latencia do nivel de baixo numa falha.
+    public int access(int addr, boolean write, CacheStats stats) {
+        if (level > 0) {
+            synchronized (this) { // L2 compartilhada pelos nucleos do modo GUEST_THREADS
+                return lookup(addr, write, stats);
+            }
+        }
+        return lookup(addr, write, stats);
+    }
+
+    private int lookup(int addr, boolean write, CacheStats stats) {
+        int line = addr >>> lineShift;
+        int set = line % sets;
+        int base = set * ways;
+        for (int w = 0; w < ways; w++) {
+            if (tags[base + w] == line) {
+                totals.hits[level]++;
+                stats.hits[level]++;
+                touch(set, w);
+                dirty[base + w] |= write;
+                return 0;
+            }
+        }
+        totals.misses[level]++;
+        stats.misses[level]++;
+        int w = victim(set);
+        int extra = 0;
+        if (tags[base + w] >= 0 && dirty[base + w]) {
+            totals.writebacks[level]++;
+            stats.writebacks[level]++;
+            if (next != null) {
+                extra += next.access(tags[base + w] << lineShift, true, stats); // sobe a linha suja para a L2
+            }
+        }
+        extra += next != null ? L2_LATENCY + next.access(addr, false, stats) : MEMORY_LATENCY;
+        tags[base + w] = line;
+        dirty[base + w] = write;
+        touch(set, w);
+        return extra;
+    }
+
+    private void touch(int set, int way) {
+        if (policy == Policy.LRU) {
+            stamp[set * ways + way] = ++clock;
+            return;
+        }
+        // PLRU: cada no do caminho passa a apontar para o lado oposto ao acessado
+        int bits = tree[set];
+        int node = 1;
+        for (int span = ways >> 1; span > 0; span >>= 1) {
+            boolean right = (way & span) != 0;
+            bits = right ? bits & ~(1 << node) : bits | (1 << node);
+            node = node * 2 + (right ? 1 : 0);
+        }
+        tree[set] = bits;
+    }
+
+    private int victim(int set) {
+        int base = set * ways;
+        for (int w = 0; w < ways; w++) {
+            if (tags[base + w] < 0) {
+                return w;
+            }
+        }
+        if (policy == Policy.LRU) {
+            int v = 0;
+            for (int w = 1; w < ways; w++) {
+                if (stamp[base + w] < stamp[base + v]) {
+                    v = w;
+                }
+            }
+            return v;
+        }
+        int bits = tree[set];
+        int node = 1;
+        int way = 0;
+        for (int span = ways >> 1; span > 0; span >>= 1) {
+            boolean right = (bits & (1 << node)) != 0; // bit ligado: o menos recente esta a direita
+            if (right) {
+                way |= span;
+            }
+            node = node * 2 + (right ? 1 : 0);
+        }
+        return way;
+    }
+
+    public String describe() {
+        return "L" + (level + 1) + ": " + sizeWords + " palavras, linha " + lineWords + ", " + ways + " vias, "
+                + sets + " conjuntos, " + policy;
+    }
+
+    // Monta L1 (e L2 opcional) a partir de "tam/linha/vias[/lru|plru][,tam/linha/vias[/lru|plru]]"
+    public static Cache parse(String spec) {
+        String[] levels = spec.split(",");
+        if (levels.length > CacheStats.LEVELS) {
+            throw new IllegalArgumentException("No maximo " + CacheStats.LEVELS + " niveis: " + spec);
+        }
+        Cache below = null;
+        for (int i = levels.length - 1; i >= 0; i--) {
+            String[] f = levels[i].trim().split("/");
+            if (f.length < 3 || f.length > 4) {
+                throw new IllegalArgumentException("Esperado tam/linha/vias[/lru|plru]: " + levels[i]);
+            }
+            Policy policy = f.length == 4 ? Policy.valueOf(f[3].toUpperCase()) : Policy.LRU;
+            below = new Cache(i, Integer.parseInt(f[0]), Integer.parseInt(f[1]), Integer.parseInt(f[2]), policy, below);
+        }
+        return below;
+    }
+}
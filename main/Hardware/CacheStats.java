@@ -0,0 +1,34 @@
+package Hardware;
+
+import java.io.PrintStream;
+
+// Contadores de cache de um processo (ou do total), por nivel: indice 0 = L1, 1 = L2
+public class CacheStats {
+    public static final int LEVELS = 2;
+    public final long[] hits = new long[LEVELS];
+    public final long[] misses = new long[LEVELS];
+    public final long[] writebacks = new long[LEVELS];
+
+    public void add(CacheStats other) {
+        for (int i = 0; i < LEVELS; i++) {
+            hits[i] += other.hits[i];
+            misses[i] += other.misses[i];
+            writebacks[i] += other.writebacks[i];
+        }
+    }
+
+    public double missRate(int level) {
+        long n = hits[level] + misses[level];
+        return n == 0 ? 0 : (double) misses[level] / n;
+    }
+
+    // uma linha por nivel usado
+    public void print(PrintStream out, String prefix) {
+        for (int i = 0; i < LEVELS; i++) {
+            if (hits[i] + misses[i] > 0) {
+                out.printf("%sL%d: %d acertos, %d falhas (%.1f%%), %d write-backs%n", prefix, i + 1,
+                        hits[i], misses[i], missRate(i) * 100, writebacks[i]);
+            }
+        }
+    }
+}
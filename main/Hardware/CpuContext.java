@@ -0,0 +1,30 @@
+package Hardware;
+
+import java.util.List;
+
+import Software.Page;
+
+// Estado arquitetural de um processo (pc e registradores) mais a forma da sua tabela de paginas
+// ja decodificada para a MMU. O PCB e dono do seu contexto; trocar de processo na CPU e trocar a
+// referencia (CPU.switchTo), sem copiar registradores: a CPU escreve direto no array do processo.
+public class CpuContext {
+    public int pc;
+    public final int[] reg = new int[10];
+
+    // cache da MMU, valido enquanto a tabela for a mesma lista (alloc cria uma nova; compactacao e
+    // memoria compartilhada mudam so paginas de tamanho base, que nao alteram estes campos)
+    List<Page> pages;
+    int hugeCount;
+    int hugeSize;
+    int hugeLimit;
+
+    void map(List<Page> _pages, int pageSize) {
+        pages = _pages;
+        hugeCount = 0;                                                    // paginas grandes ficam no inicio da tabela
+        while (hugeCount < _pages.size() && _pages.get(hugeCount).size > pageSize) {
+            hugeCount++;
+        }
+        hugeSize = hugeCount > 0 ? _pages.get(0).size : 0;
+        hugeLimit = hugeCount * hugeSize;
+    }
+}
@@ -0,0 +1,78 @@
+package Hardware;
+
+import java.io.PrintStream;
+
+import Software.Opcode;
+
+// Custo, em ciclos simulados, de cada instrucao. A CPU soma o custo da instrucao buscada no seu
+// contador de ciclos; com isso o tempo de um programa convidado nao depende da maquina hospedeira.
+// Padrao: operacoes em registrador 1, acesso a memoria 3, MULT 4, CAS 5, BMOVE/BFILL 5, SYSCALL 20.
+// BMOVE e BFILL custam ainda BLOCK_WORD ciclos por palavra do bloco.
+public class CycleCosts {
+    public static final int BLOCK_WORD = 1;
+
+    private final int[] cost = new int[Opcode.values().length];
+
+    public CycleCosts() {
+        for (Opcode o : Opcode.values()) {
+            cost[o.ordinal()] = 1;
+        }
+        for (Opcode o : new Opcode[]{Opcode.LDD, Opcode.LDX, Opcode.STD, Opcode.STX,
+                Opcode.JMPIM, Opcode.JMPIGM, Opcode.JMPILM, Opcode.JMPIEM}) {
+            cost[o.ordinal()] = 3;
+        }
+        cost[Opcode.MULT.ordinal()] = 4;
+        cost[Opcode.CAS.ordinal()] = 5;
+        cost[Opcode.BMOVE.ordinal()] = 5;
+        cost[Opcode.BFILL.ordinal()] = 5;
+        cost[Opcode.SYSCALL.ordinal()] = 20;
+    }
+
+    // tabela indexada por Opcode.ordinal(); a CPU le direto dela, alteracoes valem na hora
+    int[] table() {
+        return cost;
+    }
+
+    public int get(Opcode o) {
+        return cost[o.ordinal()];
+    }
+
+    // custo da instrucao mais cara (sem a parte por palavra de BMOVE/BFILL)
+    public int max() {
+        int max = 0;
+        for (int c : cost) {
+            max = Math.max(max, c);
+        }
+        return max;
+    }
+
+    public void set(Opcode o, int cycles) {
+        if (cycles < 0) {
+            throw new IllegalArgumentException("Custo negativo para " + o + ": " + cycles);
+        }
+        cost[o.ordinal()] = cycles;
+    }
+
+    // Aplica uma lista "OPC=n,OPC=n" (ex.: "MULT=8,SYSCALL=50")
+    public void parse(String spec) {
+        for (String item : spec.split(",")) {
+            String[] kv = item.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Esperado OPC=ciclos: " + item);
+            }
+            set(Opcode.valueOf(kv[0].trim().toUpperCase()), Integer.parseInt(kv[1].trim()));
+        }
+    }
+
+    public void print(PrintStream out) {
+        StringBuilder sb = new StringBuilder("Custo por instrucao (ciclos):");
+        int col = 0;
+        for (Opcode o : Opcode.values()) {
+            if (o == Opcode.DATA || o == Opcode.___) {
+                continue;
+            }
+            sb.append(col++ % 6 == 0 ? "\n  " : "  ").append(String.format("%-7s %3d", o, cost[o.ordinal()]));
+        }
+        out.println(sb);
+    }
+}
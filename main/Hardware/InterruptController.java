@@ -0,0 +1,69 @@
+package Hardware;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import Software.Interrupts;
+
+// Controlador de interrupcoes da CPU: vetor de bits pendentes (um bit por Interrupts),
+// ligado atomicamente por qualquer thread (timer, console, SO) e lido pela CPU ao fim de
+// cada instrucao. Bits mascarados continuam pendentes ate serem desmascarados.
+// Prioridade: menor ordinal de Interrupts e atendido primeiro.
+public class InterruptController {
+    private static final Interrupts[] SOURCES = Interrupts.values();
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile int mask = ~0;                 // bits habilitados
+    private final AtomicLongArray raised = new AtomicLongArray(SOURCES.length); // contador por fonte
+
+    public void raise(Interrupts irpt) {
+        if (irpt == Interrupts.noInterrupt) {
+            return;
+        }
+        int b = irpt.bit();
+        int v;
+        do {
+            v = pending.get();
+        } while (!pending.compareAndSet(v, v | b));
+        raised.incrementAndGet(irpt.ordinal());
+    }
+
+    public boolean hasPending() {
+        return (pending.get() & mask) != 0;
+    }
+
+    // Retira de uma vez todas as pendentes habilitadas; o tratador percorre o vetor por prioridade
+    public int takePending() {
+        int v, taken;
+        do {
+            v = pending.get();
+            taken = v & mask;
+        } while (taken != 0 && !pending.compareAndSet(v, v & ~taken));
+        return taken;
+    }
+
+    // Descarta pendentes (ex.: faltas do processo anterior numa troca de contexto)
+    public void clear(int bits) {
+        int v;
+        do {
+            v = pending.get();
+        } while (!pending.compareAndSet(v, v & ~bits));
+    }
+
+    public void mask(Interrupts irpt) {
+        mask &= ~irpt.bit();
+    }
+
+    public void unmask(Interrupts irpt) {
+        mask |= irpt.bit();
+    }
+
+    public long count(Interrupts irpt) {
+        return raised.get(irpt.ordinal());
+    }
+
+    // Proxima interrupcao por prioridade dentro de um vetor retirado com takePending
+    public static Interrupts highest(int bits) {
+        return bits == 0 ? Interrupts.noInterrupt : SOURCES[Integer.numberOfTrailingZeros(bits)];
+    }
+}
@@ -1,14 +1,270 @@
 package Hardware;
 
+import java.util.Arrays;
+
 import Software.Opcode;
 
+// Memoria fisica esparsa: blocos de CHUNK palavras alocados na primeira escrita, cada um um array
+// de long com a palavra empacotada (32 bits altos: opcode, ra, rb e a marca de verificado; 32
+// baixos: p), entao a busca de instrucao e uma so leitura de array. Bloco nunca escrito le como
+// palavra vazia [___, -1, -1, -1] sem alocar; criar a memoria nao depende do tamanho configurado e
+// o residente acompanha os frames ja usados. Bloco criado nunca e devolvido: as escritas leem
+// chunks[] sem lock e gravam no array obtido, entao trocar o bloco por baixo delas perderia escritas.
+// ra e rb guardam 8 bits com sinal: indices de registrador e -1.
 public class Memory {
-    public Word[] pos;
+    public static final int CHUNK_SHIFT = 12;
+    public static final int CHUNK = 1 << CHUNK_SHIFT; // palavras por bloco
+    private static final int MASK = CHUNK - 1;
+    private static final long VERIFIED = 1L << 56;
+    private static final long OPC = 0xFFL << 32;
+    private static final long P = 0xFFFFFFFFL;
+    public static final Opcode[] OPCODES = Opcode.values(); // indexado por wordOpcode
+    private static final long EMPTY = pack(Opcode.___, -1, -1, -1);
+    private static final long[] EMPTY_WORDS = new long[CHUNK]; // bloco nunca escrito, so leitura
+    static {
+        Arrays.fill(EMPTY_WORDS, EMPTY);
+    }
+
+    // campo final: um bloco lido por outra thread (sem lock) ja aparece inicializado
+    private static final class Chunk {
+        final long[] words;
+
+        Chunk() {
+            words = new long[CHUNK];
+            Arrays.fill(words, EMPTY);
+        }
+
+        Chunk(Chunk other) {
+            words = other.words.clone();
+        }
+    }
+
+    private final int size;
+    private final Chunk[] chunks; // null = bloco nunca escrito
+    private int resident;         // blocos alocados
+    private volatile int layout;  // muda a cada bloco criado (invalida o array de vazias guardado pela CPU)
 
     public Memory(int size) {
-        pos = new Word[size];
-        for (int i = 0; i < pos.length; i++) {
-            pos[i] = new Word(Opcode.___, -1, -1, -1);
+        if (size <= 0) {
+            throw new IllegalArgumentException("Tamanho de memoria invalido: " + size);
+        }
+        this.size = size;
+        this.chunks = new Chunk[(int) (((long) size + CHUNK - 1) >>> CHUNK_SHIFT)];
+    }
+
+    private static long pack(Opcode opc, int ra, int rb, int p) {
+        return (long) (opc.ordinal() | (ra & 0xFF) << 8 | (rb & 0xFF) << 16) << 32 | (p & P);
+    }
+
+    // a palavra vira DATA com o valor; ra, rb e a marca ficam
+    private static long data(long w, int value) {
+        return (w & ~OPC & ~P) | (long) Opcode.DATA.ordinal() << 32 | (value & P);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized int residentChunks() {
+        return resident;
+    }
+
+    // bloco da posicao, alocado se preciso (escrita)
+    private Chunk chunk(int addr) {
+        Chunk c = chunks[addr >>> CHUNK_SHIFT];
+        return c != null ? c : allocate(addr >>> CHUNK_SHIFT);
+    }
+
+    private synchronized Chunk allocate(int index) {
+        if (chunks[index] == null) {
+            chunks[index] = new Chunk();
+            resident++;
+            layout++;
+        }
+        return chunks[index];
+    }
+
+    private long word(int addr) {
+        Chunk c = chunks[addr >>> CHUNK_SHIFT];
+        return c == null ? EMPTY : c.words[addr & MASK];
+    }
+
+    // ---------------- leitura ----------------
+
+    // Palavras do bloco de addr, para a busca de instrucao da CPU, que guarda o array enquanto o pc
+    // fica no bloco e layout() nao muda. Bloco nunca escrito: array de vazias compartilhado (so
+    // leitura). Os campos de cada palavra saem com word* sem criar Word.
+    public long[] chunkWords(int addr) {
+        Chunk c = chunks[addr >>> CHUNK_SHIFT];
+        return c == null ? EMPTY_WORDS : c.words;
+    }
+
+    public int layout() {
+        return layout;
+    }
+
+    public static int wordOpcode(long w) {
+        return (int) (w >>> 32) & 0xFF;
+    }
+
+    public static int wordRa(long w) {
+        return (byte) (w >>> 40);
+    }
+
+    public static int wordRb(long w) {
+        return (byte) (w >>> 48);
+    }
+
+    public static int wordP(long w) {
+        return (int) w;
+    }
+
+    public static boolean wordVerified(long w) {
+        return (w & VERIFIED) != 0;
+    }
+
+    // decodifica a palavra em 'into' (verificacao na carga reaproveita a mesma Word)
+    public void read(int addr, Word into) {
+        long w = word(addr);
+        into.opc = OPCODES[wordOpcode(w)];
+        into.ra = wordRa(w);
+        into.rb = wordRb(w);
+        into.verified = wordVerified(w);
+        into.p = wordP(w);
+    }
+
+    // copia da palavra (para dump, snapshot e exportacao)
+    public Word get(int addr) {
+        Word w = new Word(Opcode.___, -1, -1, -1);
+        read(addr, w);
+        return w;
+    }
+
+    public int p(int addr) {
+        return (int) word(addr);
+    }
+
+    public Opcode opc(int addr) {
+        return OPCODES[wordOpcode(word(addr))];
+    }
+
+    // mesma palavra (opcode, ra, rb, p) na posicao, aqui e em 'other'
+    public boolean same(int addr, Memory other) {
+        return ((word(addr) ^ other.word(addr)) & ~VERIFIED) == 0;
+    }
+
+    // ---------------- escrita ----------------
+
+    public void set(int addr, Word w) {
+        chunk(addr).words[addr & MASK] = pack(w.opc, w.ra, w.rb, w.p) | (w.verified ? VERIFIED : 0);
+    }
+
+    public void set(int addr, Opcode opc, int ra, int rb, int p) {
+        chunk(addr).words[addr & MASK] = pack(opc, ra, rb, p);
+    }
+
+    // STD/STX: a posicao vira DATA com o valor, ra e rb ficam
+    public void store(int addr, int value) {
+        long[] words = chunk(addr).words;
+        int i = addr & MASK;
+        words[i] = data(words[i], value);
+    }
+
+    public void setVerified(int addr, boolean verified) {
+        long[] words = chunk(addr).words;
+        int i = addr & MASK;
+        words[i] = verified ? words[i] | VERIFIED : words[i] & ~VERIFIED;
+    }
+
+    // CAS: se o valor e 'expected', grava DATA 'value'. Atomico entre nucleos (lock do bloco).
+    // Retorna o valor antigo.
+    public int compareAndSet(int addr, int expected, int value) {
+        Chunk c = chunk(addr);
+        int i = addr & MASK;
+        synchronized (c) {
+            int old = (int) c.words[i];
+            if (old == expected) {
+                c.words[i] = data(c.words[i], value);
+            }
+            return old;
+        }
+    }
+
+    // ---------------- blocos ----------------
+
+    // Copia n palavras de 'from' para 'to' com System.arraycopy, por trechos que nao cruzam bloco.
+    // Com sobreposicao e destino depois da origem, do fim para o inicio (memmove). A copia perde a
+    // marca de verificado, que vale so para a posicao de carga.
+    public void copy(int from, int to, int n) {
+        boolean backward = to > from && to < from + n;
+        while (n > 0) {
+            int run;
+            int src;
+            int dst;
+            if (backward) {
+                run = Math.min(n, Math.min(((from + n - 1) & MASK) + 1, ((to + n - 1) & MASK) + 1));
+                src = from + n - run;
+                dst = to + n - run;
+            } else {
+                run = Math.min(n, Math.min(CHUNK - (from & MASK), CHUNK - (to & MASK)));
+                src = from;
+                dst = to;
+                from += run;
+                to += run;
+            }
+            n -= run;
+            Chunk s = chunks[src >>> CHUNK_SHIFT];
+            Chunk d = s == null ? chunks[dst >>> CHUNK_SHIFT] : chunk(dst);
+            if (d == null) {
+                continue; // vazio sobre vazio
+            }
+            int di = dst & MASK;
+            if (s == null) {
+                Arrays.fill(d.words, di, di + run, EMPTY);
+            } else {
+                System.arraycopy(s.words, src & MASK, d.words, di, run);
+                for (int i = di; i < di + run; i++) {
+                    d.words[i] &= ~VERIFIED;
+                }
+            }
+        }
+    }
+
+    // n palavras a partir de 'to' viram DATA 'value'
+    public void fill(int to, int n, int value) {
+        long w = pack(Opcode.DATA, -1, -1, value);
+        while (n > 0) {
+            int run = Math.min(n, CHUNK - (to & MASK));
+            Arrays.fill(chunk(to).words, to & MASK, (to & MASK) + run, w);
+            to += run;
+            n -= run;
+        }
+    }
+
+    // Devolve [from, to) ao estado vazio (o bloco continua alocado). Quem chama garante que nenhum
+    // processo esta usando essas posicoes; os outros frames do bloco seguem sendo escritos sem lock.
+    public void clear(int from, int to) {
+        while (from < to) {
+            int index = from >>> CHUNK_SHIFT;
+            int end = (int) Math.min(to, (long) (index + 1) << CHUNK_SHIFT);
+            Chunk c = chunks[index];
+            if (c != null) {
+                int i = from & MASK;
+                Arrays.fill(c.words, i, i + (end - from), EMPTY);
+            }
+            from = end;
+        }
+    }
+
+    // Copia independente (base do diff do MemoryDumper): so os blocos residentes sao copiados
+    public synchronized Memory copyOf() {
+        Memory m = new Memory(size);
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] != null) {
+                m.chunks[i] = new Chunk(chunks[i]);
+                m.resident++;
+            }
         }
+        return m;
     }
 }
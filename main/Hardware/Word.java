@@ -7,6 +7,7 @@ public class Word {
     public int ra;
     public int rb;
     public int p;
+    public boolean verified; // endereco direto (p) validado na carga do processo, ver CPU.verify
 
     public Word(Opcode _opc, int _ra, int _rb, int _p) {
         opc = _opc;
@@ -5,9 +5,17 @@ import Hardware.*;
 public class Program {
     public String name;
     public Word[] image;
+    private ProgramAnalysis analysis; // grafo de fluxo e metadados, calculados na primeira carga
 
     public Program(String n, Word[] i) {
         name = n;
         image = i;
     }
+
+    public synchronized ProgramAnalysis analysis() {
+        if (analysis == null) {
+            analysis = new ProgramAnalysis(image);
+        }
+        return analysis;
+    }
 }
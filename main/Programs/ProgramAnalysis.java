@@ -0,0 +1,468 @@
+package Programs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import Hardware.Word;
+import Software.Opcode;
+
+// Analise estatica de uma imagem, feita uma vez por programa na carga. Monta o grafo de fluxo a
+// partir de 0 seguindo os desvios; destinos por registrador (JMPIG/JMPIL/JMPIE) e enderecos de
+// LDX/STX/syscalls sao resolvidos por propagacao de constantes (LDI, MOVE, ADDI, ...). Com isso separa
+// codigo de dados, aponta codigo inalcancavel e lacos sem saida e, para programas sem laco, conta
+// quantas instrucoes executam no pior caso.
+public class ProgramAnalysis {
+    private static final int REGS = 10;
+    private static final int UNKNOWN_TARGET = -1;
+
+    public final int length;
+    public final boolean[] code;        // posicao alcancavel como instrucao
+    public final boolean[] data;        // posicao lida/escrita como dado (ou DATA na imagem)
+    public final int[] unreachable;     // instrucoes que nunca executam e nao sao dados
+    public final int[] infiniteLoops;   // primeira posicao de cada laco sem saida, sem STOP nem SYSCALL
+    public final int[] outOfImage;      // instrucoes que desviam para fora da imagem
+    public final int loops;             // lacos (componentes fortemente conexos com ciclo)
+    public final boolean indirectJumps; // algum desvio com destino desconhecido: o grafo pode estar incompleto
+    public final long maxInstructions;  // instrucoes no pior caso; -1 se houver laco ou desvio desconhecido
+
+    private final Word[] image;
+    private final int[][] known;        // por posicao: valor de cada registrador, se constante
+    private final int[] knownMask;      // bit r ligado = registrador r constante na entrada da posicao
+    private final int[][] succ;
+
+    public ProgramAnalysis(Word[] image) {
+        this.image = image;
+        this.length = image.length;
+        this.code = new boolean[length];
+        this.data = new boolean[length];
+        this.known = new int[length][];
+        this.knownMask = new int[length];
+        this.succ = new int[length][];
+
+        propagate();
+        boolean indirect = false;
+        ArrayList<Integer> out = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            if (!code[i]) {
+                continue;
+            }
+            succ[i] = successors(i, known[i], knownMask[i]);
+            for (int t : succ[i]) {
+                if (t == UNKNOWN_TARGET) {
+                    indirect = true;
+                } else if (t >= length) {
+                    out.add(i);
+                }
+            }
+            markData(i, known[i], knownMask[i]);
+        }
+        for (int i = 0; i < length; i++) {
+            if (image[i] != null && image[i].opc == Opcode.DATA) {
+                data[i] = true;
+            }
+        }
+        ArrayList<Integer> dead = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            if (!code[i] && !data[i] && image[i] != null && image[i].opc != Opcode.___) {
+                dead.add(i);
+            }
+        }
+        this.indirectJumps = indirect;
+        this.outOfImage = toArray(out);
+        this.unreachable = toArray(dead);
+
+        // lacos: componentes fortemente conexos (Tarjan) do grafo alcancavel
+        ArrayList<Integer> infinite = new ArrayList<>();
+        this.loops = stronglyConnected(infinite);
+        this.infiniteLoops = toArray(infinite);
+        this.maxInstructions = loops == 0 && !indirect ? longestPath() : -1;
+    }
+
+    // ---------------- propagacao de constantes ----------------
+
+    private void propagate() {
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        if (length == 0) {
+            return;
+        }
+        known[0] = new int[REGS];
+        knownMask[0] = (1 << REGS) - 1; // registradores comecam zerados
+        code[0] = true;
+        work.add(0);
+        int[] regs = new int[REGS];
+        while (!work.isEmpty()) {
+            int i = work.poll();
+            System.arraycopy(known[i], 0, regs, 0, REGS);
+            int mask = transfer(image[i], regs, knownMask[i]);
+            for (int t : successors(i, known[i], knownMask[i])) {
+                if (t < 0 || t >= length) {
+                    continue;
+                }
+                if (!code[t]) {
+                    code[t] = true;
+                    known[t] = regs.clone();
+                    knownMask[t] = mask;
+                    work.add(t);
+                } else if (join(t, regs, mask)) {
+                    work.add(t);
+                }
+            }
+        }
+    }
+
+    // junta o estado que chega em t; true se t perdeu alguma constante (precisa reprocessar)
+    private boolean join(int t, int[] regs, int mask) {
+        int keep = knownMask[t] & mask;
+        for (int r = 0; r < REGS; r++) {
+            if ((keep & (1 << r)) != 0 && known[t][r] != regs[r]) {
+                keep &= ~(1 << r);
+            }
+        }
+        if (keep == knownMask[t]) {
+            return false;
+        }
+        knownMask[t] = keep;
+        return true;
+    }
+
+    // efeito da instrucao nos registradores constantes; retorna a nova mascara (posicao vazia: nenhum)
+    private static int transfer(Word w, int[] regs, int mask) {
+        if (w == null) {
+            return mask;
+        }
+        int a = w.ra;
+        int b = w.rb;
+        switch (w.opc) {
+            case LDI:
+                return set(regs, mask, a, w.p, true);
+            case MOVE:
+                return set(regs, mask, a, valid(b) ? regs[b] : 0, isKnown(mask, b));
+            case ADDI:
+                return set(regs, mask, a, valid(a) ? regs[a] + w.p : 0, isKnown(mask, a));
+            case SUBI:
+                return set(regs, mask, a, valid(a) ? regs[a] - w.p : 0, isKnown(mask, a));
+            case ADD:
+                return set(regs, mask, a, valid(a) && valid(b) ? regs[a] + regs[b] : 0, isKnown(mask, a) && isKnown(mask, b));
+            case SUB:
+                return set(regs, mask, a, valid(a) && valid(b) ? regs[a] - regs[b] : 0, isKnown(mask, a) && isKnown(mask, b));
+            case MULT:
+                return set(regs, mask, a, valid(a) && valid(b) ? regs[a] * regs[b] : 0, isKnown(mask, a) && isKnown(mask, b));
+            case LDD: case LDX: case CAS:
+                return set(regs, mask, a, 0, false);
+            case SYSCALL:
+                // a syscall 3 devolve o endereco do segmento em r9
+                return isKnown(mask, 8) && regs[8] != 3 ? mask : set(regs, mask, 9, 0, false);
+            default:
+                return mask;
+        }
+    }
+
+    private static int set(int[] regs, int mask, int r, int v, boolean isConst) {
+        if (!valid(r)) {
+            return mask;
+        }
+        if (isConst && v >= -32767 && v <= 32767) { // fora da faixa a CPU levanta overflow
+            regs[r] = v;
+            return mask | (1 << r);
+        }
+        return mask & ~(1 << r);
+    }
+
+    private static boolean valid(int r) {
+        return r >= 0 && r < REGS;
+    }
+
+    private static boolean isKnown(int mask, int r) {
+        return valid(r) && (mask & (1 << r)) != 0;
+    }
+
+    // ---------------- grafo ----------------
+
+    // Destinos possiveis da instrucao i (UNKNOWN_TARGET = depende de valor nao constante).
+    // Condicoes sobre registradores constantes escolhem um lado so.
+    private int[] successors(int i, int[] regs, int mask) {
+        Word w = image[i];
+        if (w == null) {
+            return new int[0];
+        }
+        int next = i + 1;
+        switch (w.opc) {
+            case JMP:
+                return new int[]{w.p};
+            case JMPIGK: case JMPILK: case JMPIEK:
+                return branch(w.opc, w.rb, regs, mask, w.p, next);
+            case JMPIG: case JMPIL: case JMPIE: {
+                int target = isKnown(mask, w.ra) ? regs[w.ra] : UNKNOWN_TARGET;
+                return branch(w.opc, w.rb, regs, mask, target, next);
+            }
+            case JMPIGT:
+                if (isKnown(mask, w.ra) && isKnown(mask, w.rb)) {
+                    return new int[]{regs[w.ra] > regs[w.rb] ? w.p : next};
+                }
+                return new int[]{w.p, next};
+            case JMPIM:
+                return new int[]{UNKNOWN_TARGET};
+            case JMPIGM: case JMPILM: case JMPIEM:
+                return new int[]{UNKNOWN_TARGET, next};
+            case STOP: case DATA: case ___: case JMPI: // JMPI nao existe na CPU: instrucao invalida
+                return new int[0];
+            default:
+                return new int[]{next};
+        }
+    }
+
+    private static int[] branch(Opcode opc, int cond, int[] regs, int mask, int target, int next) {
+        if (!isKnown(mask, cond)) {
+            return new int[]{target, next};
+        }
+        int c = regs[cond];
+        boolean taken;
+        switch (opc) {
+            case JMPIGK: case JMPIG:
+                taken = c > 0;
+                break;
+            case JMPILK: case JMPIL:
+                taken = c < 0;
+                break;
+            default:
+                taken = c == 0;
+        }
+        return new int[]{taken ? target : next};
+    }
+
+    // posicoes usadas como dado pela instrucao i
+    private void markData(int i, int[] regs, int mask) {
+        Word w = image[i];
+        if (w == null) {
+            return;
+        }
+        switch (w.opc) {
+            case LDD: case STD: case JMPIM: case JMPIGM: case JMPILM: case JMPIEM:
+                markData(w.p);
+                break;
+            case LDX: case CAS:
+                if (isKnown(mask, w.rb)) {
+                    markData(regs[w.rb]);
+                }
+                break;
+            case STX:
+                if (isKnown(mask, w.ra)) {
+                    markData(regs[w.ra]);
+                }
+                break;
+            case BMOVE: case BFILL:
+                if (valid(w.p) && isKnown(mask, w.p) && isKnown(mask, w.ra)) {
+                    for (int k = 0; k < regs[w.p] && k < length; k++) {
+                        markData(regs[w.ra] + k);
+                    }
+                    if (w.opc == Opcode.BMOVE && isKnown(mask, w.rb)) {
+                        for (int k = 0; k < regs[w.p] && k < length; k++) {
+                            markData(regs[w.rb] + k);
+                        }
+                    }
+                }
+                break;
+            case SYSCALL:
+                if (isKnown(mask, 8) && isKnown(mask, 9)) {
+                    int op = regs[8];
+                    if (op == 1 || op == 2 || op == 4 || op == 5 || op == 6) {
+                        markData(regs[9]);
+                    }
+                    if (op == 4 || op == 5 || op == 6) {
+                        markData(regs[9] + 1); // bloco [chave, valor]
+                    }
+                }
+                break;
+            default:
+        }
+    }
+
+    private void markData(int addr) {
+        if (addr >= 0 && addr < length) {
+            data[addr] = true;
+        }
+    }
+
+    // Tarjan iterativo: pilha de chamadas explicita (vertice e proxima aresta), sem recursao; imagens
+    // importadas ou migradas podem ter trechos lineares de qualquer tamanho
+    private int stronglyConnected(ArrayList<Integer> infinite) {
+        int[] order = new int[length];
+        int[] low = new int[length];
+        int[] comp = new int[length];      // componente de cada vertice ja fechado (0 = nenhum)
+        boolean[] onStack = new boolean[length];
+        int[] stack = new int[length];     // pilha do Tarjan: componente aberto fica no topo, contiguo
+        int sp = 0;
+        int[] calls = new int[length];     // pilha de chamadas: vertice
+        int[] edge = new int[length];      // e indice da proxima aresta dele
+        int index = 1;
+        int count = 0;
+        int comps = 0;
+        for (int root = 0; root < length; root++) {
+            if (!code[root] || order[root] != 0) {
+                continue;
+            }
+            int depth = 0;
+            order[root] = low[root] = index++;
+            stack[sp++] = root;
+            onStack[root] = true;
+            calls[depth] = root;
+            edge[depth++] = 0;
+            while (depth > 0) {
+                int v = calls[depth - 1];
+                if (edge[depth - 1] < succ[v].length) {
+                    int t = succ[v][edge[depth - 1]++];
+                    if (t < 0 || t >= length || !code[t]) {
+                        continue;
+                    }
+                    if (order[t] == 0) {
+                        order[t] = low[t] = index++;
+                        stack[sp++] = t;
+                        onStack[t] = true;
+                        calls[depth] = t;
+                        edge[depth++] = 0;
+                    } else if (onStack[t]) {
+                        low[v] = Math.min(low[v], order[t]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = calls[depth - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] != order[v]) {
+                    continue;
+                }
+                int id = ++comps;
+                int top = sp;
+                int w;
+                do {
+                    w = stack[--sp];
+                    onStack[w] = false;
+                    comp[w] = id;
+                } while (w != v);
+                if (closeComponent(stack, sp, top, comp, id, infinite)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // componente stack[from, to); true se for laco. Laco sem saida (nenhum destino fora do
+    // componente, sem STOP/SYSCALL e sem desvio desconhecido) vai para 'infinite'
+    private boolean closeComponent(int[] stack, int from, int to, int[] comp, int id, ArrayList<Integer> infinite) {
+        int v = stack[from];
+        boolean cycle = to - from > 1 || Arrays.stream(succ[v]).anyMatch(t -> t == v);
+        if (!cycle) {
+            return false;
+        }
+        boolean escapes = false;
+        int first = Integer.MAX_VALUE;
+        for (int k = from; k < to; k++) {
+            int m = stack[k];
+            first = Math.min(first, m);
+            Opcode opc = image[m].opc;
+            escapes |= opc == Opcode.STOP || opc == Opcode.SYSCALL;
+            for (int t : succ[m]) {
+                escapes |= t < 0 || t >= length || comp[t] != id;
+            }
+        }
+        if (!escapes) {
+            infinite.add(first);
+        }
+        return true;
+    }
+
+    // maior numero de instrucoes executadas a partir de 0 (grafo sem ciclos); pos-ordem com pilha
+    // explicita, como no Tarjan
+    private long longestPath() {
+        long[] memo = new long[length];
+        Arrays.fill(memo, -1);
+        int[] calls = new int[length];
+        int[] edge = new int[length];
+        for (int i = length - 1; i >= 0; i--) { // ordem reversa deixa a pilha rasa nos trechos lineares
+            if (!code[i] || memo[i] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            calls[depth] = i;
+            edge[depth++] = 0;
+            while (depth > 0) {
+                int v = calls[depth - 1];
+                if (edge[depth - 1] < succ[v].length) {
+                    int t = succ[v][edge[depth - 1]++];
+                    if (t >= 0 && t < length && code[t] && memo[t] < 0) {
+                        calls[depth] = t;
+                        edge[depth++] = 0;
+                    }
+                    continue;
+                }
+                long best = 0;
+                for (int t : succ[v]) {
+                    if (t >= 0 && t < length && code[t]) {
+                        best = Math.max(best, memo[t]);
+                    }
+                }
+                memo[v] = best + 1;
+                depth--;
+            }
+        }
+        return length == 0 ? 0 : memo[0];
+    }
+
+    // ---------------- consultas ----------------
+
+    // Tipo do trecho [start, start+size) da imagem: C = so codigo, D = so dados, M = misturado, - = nenhum
+    public char pageKind(int start, int size) {
+        boolean c = false;
+        boolean d = false;
+        for (int i = start; i < Math.min(length, start + size); i++) {
+            c |= code[i];
+            d |= data[i];
+        }
+        return c && d ? 'M' : c ? 'C' : d ? 'D' : '-';
+    }
+
+    public String pageKinds(int pageSize) {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p * pageSize < length; p++) {
+            sb.append(pageKind(p * pageSize, pageSize));
+        }
+        return sb.toString();
+    }
+
+    public int codeWords() {
+        int n = 0;
+        for (boolean c : code) {
+            n += c ? 1 : 0;
+        }
+        return n;
+    }
+
+    public int dataWords() {
+        int n = 0;
+        for (boolean d : data) {
+            n += d ? 1 : 0;
+        }
+        return n;
+    }
+
+    public String summary(int pageSize) {
+        return "codigo: " + codeWords() + " palavras, dados: " + dataWords() + " palavras, paginas " + pageKinds(pageSize)
+                + "\nlacos: " + loops + (infiniteLoops.length > 0 ? ", sem saida em " + Arrays.toString(infiniteLoops) : "")
+                + (indirectJumps ? ", ha desvios com destino desconhecido" : "")
+                + "\ninstrucoes no pior caso: " + (maxInstructions >= 0 ? String.valueOf(maxInstructions) : "desconhecido (laco)")
+                + (unreachable.length > 0 ? "\ninalcancavel: " + Arrays.toString(unreachable) : "")
+                + (outOfImage.length > 0 ? "\ndesvio para fora da imagem em: " + Arrays.toString(outOfImage) : "");
+    }
+
+    private static int[] toArray(ArrayList<Integer> list) {
+        int[] a = new int[list.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = list.get(i);
+        }
+        return a;
+    }
+}
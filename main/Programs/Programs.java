@@ -78,6 +78,60 @@ public class Programs {
 							new Word(Opcode.STOP, -1, -1, -1)
 					}
 			),
+			new Program("eco",
+					new Word[]{
+							new Word(Opcode.LDI, 8, -1, 1), // leitura
+							new Word(Opcode.LDI, 9, -1, 7), // endereco onde guardar o valor lido
+							new Word(Opcode.SYSCALL, -1, -1, -1), // bloqueia ate o console entregar (in <pid> <v>)
+							new Word(Opcode.LDI, 8, -1, 2), // escrita
+							new Word(Opcode.LDI, 9, -1, 7),
+							new Word(Opcode.SYSCALL, -1, -1, -1),
+							new Word(Opcode.STOP, -1, -1, -1),
+							new Word(Opcode.DATA, -1, -1, -1) // POS 7
+					}
+			),
+			new Program("carga",
+					new Word[]{
+							new Word(Opcode.LDI, 0, -1, 20000), // laco de CPU pura, para testes de carga
+							new Word(Opcode.SUBI, 0, -1, 1), // POS 1
+							new Word(Opcode.JMPIGK, -1, 0, 1),
+							new Word(Opcode.STOP, -1, -1, -1)
+					}
+			),
+			new Program("produtor",
+					new Word[]{
+							new Word(Opcode.LDI, 0, -1, 5), // envia 5, 4, 3, 2, 1
+							new Word(Opcode.LDI, 1, -1, 1), // chave da fila de mensagens
+							new Word(Opcode.STD, 1, -1, 10),
+							new Word(Opcode.STD, 0, -1, 11), // POS 3: valor da mensagem
+							new Word(Opcode.LDI, 8, -1, 4), // envio
+							new Word(Opcode.LDI, 9, -1, 10), // [chave, valor]
+							new Word(Opcode.SYSCALL, -1, -1, -1), // bloqueia se a fila estiver cheia
+							new Word(Opcode.SUBI, 0, -1, 1),
+							new Word(Opcode.JMPIGK, -1, 0, 3),
+							new Word(Opcode.STOP, -1, -1, -1),
+							new Word(Opcode.DATA, -1, -1, -1), // POS 10
+							new Word(Opcode.DATA, -1, -1, -1) // POS 11
+					}
+			),
+			new Program("consumidor",
+					new Word[]{
+							new Word(Opcode.LDI, 0, -1, 5), // recebe 5 mensagens
+							new Word(Opcode.LDI, 1, -1, 1), // chave da fila de mensagens
+							new Word(Opcode.STD, 1, -1, 12),
+							new Word(Opcode.LDI, 8, -1, 5), // POS 3: recebimento
+							new Word(Opcode.LDI, 9, -1, 12), // [chave, valor]
+							new Word(Opcode.SYSCALL, -1, -1, -1), // bloqueia ate chegar mensagem
+							new Word(Opcode.LDI, 8, -1, 2), // escrita
+							new Word(Opcode.LDI, 9, -1, 13),
+							new Word(Opcode.SYSCALL, -1, -1, -1),
+							new Word(Opcode.SUBI, 0, -1, 1),
+							new Word(Opcode.JMPIGK, -1, 0, 3),
+							new Word(Opcode.STOP, -1, -1, -1),
+							new Word(Opcode.DATA, -1, -1, -1), // POS 12
+							new Word(Opcode.DATA, -1, -1, -1) // POS 13
+					}
+			),
 
     };
 }
@@ -0,0 +1,36 @@
+package Software;
+
+// Daemon de compactacao: a cada intervalo pede ao ProcessManager para tornar contiguos os
+// frames dos processos prontos.
+public class CompactionThread extends Thread {
+    private final ProcessManager processManager;
+    private final long intervalMs;
+    private volatile boolean running = true;
+
+    public CompactionThread(ProcessManager processManager, long intervalMs) {
+        this.processManager = processManager;
+        this.intervalMs = intervalMs;
+        this.setName("Compaction-Thread");
+        this.setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(intervalMs);
+                processManager.compactMemory();
+            } catch (InterruptedException e) {
+                // stopCompaction: sai do laco
+            } catch (Exception e) {
+                System.err.println("Erro na thread de compactacao: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public void stopCompaction() {
+        this.running = false;
+        this.interrupt();
+    }
+}
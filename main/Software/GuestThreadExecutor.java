@@ -0,0 +1,70 @@
+package Software;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Executor do modo "uma thread por processo convidado".
+// Usa threads virtuais quando a JVM tem suporte (Java 21+, obtidas por reflexao para o
+// codigo continuar compilando em JDKs antigos); senao cai para threads de plataforma daemon.
+// O paralelismo real e limitado por um semaforo de "carriers": so quem tem permissao executa
+// instrucoes, e o convidado devolve a permissao enquanto esta bloqueado numa syscall.
+public class GuestThreadExecutor {
+    private final ThreadFactory factory;
+    private final boolean virtualThreads;
+    private final Semaphore carriers;
+    private final int parallelism;
+
+    public GuestThreadExecutor(int parallelism) {
+        this.parallelism = parallelism;
+        this.carriers = new Semaphore(parallelism, true);
+
+        ThreadFactory vtFactory = null;
+        try {
+            if (System.getProperty("jdk.virtualThreadScheduler.parallelism") == null) {
+                System.setProperty("jdk.virtualThreadScheduler.parallelism", String.valueOf(parallelism));
+            }
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "Guest-", 0L);
+            vtFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            vtFactory = null;
+        }
+
+        if (vtFactory != null) {
+            factory = vtFactory;
+            virtualThreads = true;
+        } else {
+            AtomicInteger count = new AtomicInteger();
+            factory = r -> {
+                Thread t = new Thread(null, r, "Guest-" + count.getAndIncrement(), 256 * 1024);
+                t.setDaemon(true);
+                return t;
+            };
+            virtualThreads = false;
+        }
+    }
+
+    public Thread start(Runnable guest) {
+        Thread t = factory.newThread(guest);
+        t.start();
+        return t;
+    }
+
+    public void acquireCarrier() {
+        carriers.acquireUninterruptibly();
+    }
+
+    public void releaseCarrier() {
+        carriers.release();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+}
@@ -1,10 +1,13 @@
 package Software;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import Hardware.*;
 
 public class InterruptHandling {
     private HW hw;
     private ProcessManager processManager;
+    private final AtomicLongArray handled = new AtomicLongArray(Interrupts.values().length); // atendidas por fonte, todas as CPUs
 
     public InterruptHandling(HW _hw) {
         hw = _hw;
@@ -14,12 +17,55 @@ public class InterruptHandling {
         this.processManager = pm;
     }
 
-    public void handle(Interrupts irpt) {
-        System.out.println("Interrupcao " + irpt + "   pc: " + hw.cpu.pc);
+    // Atende, numa unica entrada, todas as interrupcoes pendentes do vetor, em ordem de prioridade.
+    // Retorna true se a CPU deve parar (o processo saiu dela).
+    public boolean handle(CPU cpu, int pending) {
+        boolean stop = false;
+        while (pending != 0) {
+            Interrupts irpt = InterruptController.highest(pending);
+            pending &= ~irpt.bit();
+            handled.incrementAndGet(irpt.ordinal());
+            System.out.println("Interrupcao " + irpt + "   pc: " + cpu.pc);
+
+            if (irpt.isFault()) {
+                // falta do processo: encerra so o processo culpado, o sistema segue
+                if (processManager != null) {
+                    processManager.terminateRunningProcess();
+                }
+                stop = true;
+            } else if (irpt == Interrupts.intSTOP) {
+                // pedido de termino (kill) do processo desta CPU
+                if (processManager != null) {
+                    processManager.terminateKilledProcess();
+                }
+                stop = true;
+            } else if (irpt == Interrupts.intQuota) {
+                // orcamento de ciclos do grupo esgotado: o SO termina ou suspende o processo
+                if (processManager != null && processManager.quotaExceeded(cpu)) {
+                    stop = true;
+                }
+            } else if (irpt == Interrupts.intIO) {
+                // E/S concluida: o processo ja voltou para os prontos, quem esta na CPU segue rodando
+            } else if (irpt == Interrupts.intTimer && processManager != null) {
+                // Handle timer interrupt by telling the process manager; sem concorrentes o processo segue
+                if (processManager.handleTimerInterrupt()) {
+                    stop = true;
+                }
+            }
+        }
+        return stop;
+    }
+
+    public long handledCount(Interrupts irpt) {
+        return handled.get(irpt.ordinal());
+    }
 
-        if (irpt == Interrupts.intTimer && processManager != null) {
-            // Handle timer interrupt by telling the process manager
-            processManager.handleTimerInterrupt();
+    public void showCounters() {
+        System.out.println("Interrupcao\t\tAtendidas");
+        for (Interrupts irpt : Interrupts.values()) {
+            if (irpt != Interrupts.noInterrupt) {
+                System.out.println(irpt + "\t\t" + handled.get(irpt.ordinal()));
+            }
         }
     }
 
@@ -1,5 +1,14 @@
 package Software;
 
 public enum Interrupts {           // possiveis interrupcoes que esta CPU gera
-	noInterrupt, intEnderecoInvalido, intInstrucaoInvalida, intOverflow, intSTOP, intTimer;
+	// a ordem e a prioridade de atendimento: faltas do processo primeiro, relogio por ultimo
+	noInterrupt, intEnderecoInvalido, intInstrucaoInvalida, intOverflow, intSTOP, intQuota, intIO, intTimer;
+
+	public int bit() {             // posicao no vetor de interrupcoes pendentes do controlador
+		return 1 << ordinal();
+	}
+
+	public boolean isFault() {     // causadas pela instrucao do proprio processo
+		return this == intEnderecoInvalido || this == intInstrucaoInvalida || this == intOverflow;
+	}
 }
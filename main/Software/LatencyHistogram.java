@@ -0,0 +1,81 @@
+package Software;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Histograma de latencias em nanossegundos com baldes em potencias de 2
+// (balde i guarda amostras em [2^i, 2^(i+1)) ns). Registrar e O(1) e sem alocacao.
+public class LatencyHistogram {
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 1) {
+            nanos = 1;
+        }
+        buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+        }
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    // limite superior (ns) do balde onde cai o percentil pedido
+    public long percentile(double p) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(n * p);
+        long seen = 0;
+        for (int i = 0; i < 64; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return 1L << (i + 1);
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < 64; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    public void print() {
+        print(System.out);
+    }
+
+    public void print(PrintStream out) {
+        long n = count.get();
+        out.println("=== " + name + " (" + n + " amostras) ===");
+        if (n == 0) {
+            return;
+        }
+        for (int i = 0; i < 64; i++) {
+            long c = buckets.get(i);
+            if (c > 0) {
+                out.printf("  [%10.3f, %10.3f) us: %d%n", (1L << i) / 1000.0, (1L << (i + 1)) / 1000.0, c);
+            }
+        }
+        out.printf("  media: %.3f us  p50 < %.3f us  p99 < %.3f us  max: %.3f us%n",
+                total.get() / 1000.0 / n, percentile(0.50) / 1000.0, percentile(0.99) / 1000.0, max.get() / 1000.0);
+    }
+}
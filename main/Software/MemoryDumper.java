@@ -0,0 +1,178 @@
+package Software;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import Hardware.*;
+
+// Dump de memoria em fluxo: as linhas sao codificadas num buffer reaproveitado e despejadas
+// em blocos (console ou arquivo via NIO), entao o custo em memoria nao cresce com o intervalo.
+// Suporta paginacao (maximo de linhas por chamada), filtros e diff contra um snapshot.
+public class MemoryDumper {
+    public static final int ALL = 0;
+    public static final int NON_EMPTY = 1;  // pula celulas nunca usadas (___)
+    public static final int DATA_ONLY = 2;  // so celulas DATA
+
+    private static final int FLUSH_AT = 16 * 1024;
+
+    private final Memory mem;
+    private final int pageSize;
+    private final StringBuilder buf = new StringBuilder(FLUSH_AT + 256);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final ByteBuffer bytes = ByteBuffer.allocate(FLUSH_AT * 2);
+    private FileChannel channel; // destino atual; null = console (ou 'console' dado pelo chamador)
+    private PrintStream console = System.out;
+
+    private final Word cell = new Word(Opcode.___, -1, -1, -1); // celula decodificada da vez
+    private Memory snapshot; // copia dos blocos residentes da memoria
+    private int lines;      // celulas escritas pela ultima chamada
+
+    public MemoryDumper(Memory mem, int pageSize) {
+        this.mem = mem;
+        this.pageSize = pageSize;
+    }
+
+    // Despeja [ini, fim) no console; com maxLines > 0 para depois dessa quantidade de celulas
+    // impressas. Retorna o endereco onde continuar (fim se acabou).
+    public synchronized int dump(int ini, int fim, int filter, int maxLines) {
+        return dump(ini, fim, filter, maxLines, System.out);
+    }
+
+    // Mesmo dump, escrito em 'out' (ex.: resposta de um cliente do CommandServer)
+    public synchronized int dump(int ini, int fim, int filter, int maxLines, PrintStream out) {
+        channel = null;
+        console = out;
+        try {
+            int next = encodeRange(ini, fim, filter, maxLines);
+            flush();
+            return next;
+        } finally {
+            console = System.out;
+        }
+    }
+
+    // Mesmo formato do dump, gravado em arquivo (sobrescreve). Retorna quantas celulas gravou.
+    public synchronized int dumpToFile(int ini, int fim, int filter, Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel = ch;
+            lines = 0;
+            encodeRange(ini, fim, filter, 0);
+            flush();
+            return lines;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            channel = null;
+        }
+    }
+
+    // Foto da memoria, base para diff: so os blocos residentes sao copiados
+    public synchronized void snapshot() {
+        snapshot = mem.copyOf();
+    }
+
+    public synchronized boolean hasSnapshot() {
+        return snapshot != null;
+    }
+
+    // Imprime so as celulas de [ini, fim) que mudaram desde o snapshot. Retorna quantas mudaram.
+    public synchronized int diff(int ini, int fim) {
+        channel = null;
+        fim = Math.min(fim, mem.size());
+        int changed = 0;
+        for (int i = Math.max(ini, 0); i < fim; i++) {
+            if (!mem.same(i, snapshot)) {
+                changed++;
+                buf.append(i).append(":  ");
+                snapshot.read(i, cell);
+                appendCell(cell);
+                buf.append(" -> ");
+                mem.read(i, cell);
+                appendCell(cell);
+                buf.append('\n');
+                if (buf.length() >= FLUSH_AT) {
+                    flush();
+                }
+            }
+        }
+        flush();
+        return changed;
+    }
+
+    private int encodeRange(int ini, int fim, int filter, int maxLines) {
+        fim = Math.min(fim, mem.size());
+        int printed = 0;
+        int i = Math.max(ini, 0);
+        for (; i < fim; i++) {
+            if (maxLines > 0 && printed == maxLines) {
+                break;
+            }
+            if (i % pageSize == 0 && filter == ALL) {
+                buf.append("Frame :").append(i / pageSize).append('\n');
+            }
+            Word w = cell;
+            mem.read(i, w);
+            if (filter == NON_EMPTY && w.opc == Opcode.___) {
+                continue;
+            }
+            if (filter == DATA_ONLY && w.opc != Opcode.DATA) {
+                continue;
+            }
+            buf.append(i).append(":  ");
+            appendCell(w);
+            buf.append('\n');
+            printed++;
+            if (buf.length() >= FLUSH_AT) {
+                flush();
+            }
+        }
+        lines += printed;
+        return i;
+    }
+
+    private void appendCell(Word w) {
+        appendWord(w.opc, w.ra, w.rb, w.p);
+    }
+
+    private void appendWord(Opcode opc, int ra, int rb, int p) {
+        buf.append("[ ").append(opc).append(", ").append(ra).append(", ").append(rb)
+                .append(", ").append(p).append("  ] ");
+    }
+
+    private void flush() {
+        if (buf.length() == 0) {
+            return;
+        }
+        if (channel == null) {
+            console.print(buf);
+        } else {
+            try {
+                CharBuffer chars = CharBuffer.wrap(buf);
+                encoder.reset();
+                while (true) {
+                    bytes.clear();
+                    boolean done = !encoder.encode(chars, bytes, true).isOverflow();
+                    bytes.flip();
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    if (done) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        buf.setLength(0);
+    }
+}
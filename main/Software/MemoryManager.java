@@ -1,29 +1,107 @@
 package Software;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import Programs.Program;
 import Hardware.*;
 
 public class MemoryManager {
-    ArrayList<Page> pageList = new ArrayList<>();
+    private static final int FRAME_BLOCK_SHIFT = 10; // Pages por bloco da tabela de frames
+    public final int frameCount;
+    private final Page[][] frameTable; // blocos de Pages criados no primeiro uso (frame)
+    private final BitSet busy = new BitSet(); // frames ocupados
+    private int usedFrames;
     Memory mem;
+    public final int pageSize;     // tamanho do frame em palavras, configuravel por Sistema
+    private int hugeFrames = 0;    // frames por pagina grande; 0 = paginas grandes desligadas
+    public final AccessBits accessBits; // por frame: Page.REFERENCED / Page.DIRTY, ligados pela CPU
+    WorkingSet workingSet;          // historico de referencias por frame (registra-se ao ser criado)
 
-    public MemoryManager(Memory mem){
-        for(int i = 0; i < mem.pos.length; i+=8){
-                pageList.add(new Page(i, i+8, 8, false));
+    public MemoryManager(Memory mem, int pageSize){
+        if (pageSize <= 0 || pageSize > mem.size()) {
+            throw new IllegalArgumentException("Tamanho de pagina invalido: " + pageSize);
         }
+        this.pageSize = pageSize;
         this.mem = mem;
+        // so frames inteiros: a CPU traduz contando pageSize palavras por pagina, entao um frame
+        // final curto cortaria a imagem de quem o recebesse
+        this.frameCount = mem.size() / pageSize;
+        if (mem.size() % pageSize != 0) {
+            System.out.println("Memoria de " + mem.size() + " palavras nao e multiplo da pagina de " + pageSize
+                    + ": as " + mem.size() % pageSize + " palavras finais ficam sem uso");
+        }
+        this.frameTable = new Page[(frameCount >>> FRAME_BLOCK_SHIFT) + 1][];
+        this.accessBits = new AccessBits(frameCount);
+    }
+
+    // Page do frame f; so frames ja usados alguma vez ocupam memoria do hospedeiro
+    Page frame(int f) {
+        Page[] block = frameTable[f >>> FRAME_BLOCK_SHIFT];
+        if (block == null) {
+            block = frameTable[f >>> FRAME_BLOCK_SHIFT] = new Page[1 << FRAME_BLOCK_SHIFT];
+        }
+        Page pg = block[f & ((1 << FRAME_BLOCK_SHIFT) - 1)];
+        if (pg == null) {
+            int start = f * pageSize;
+            pg = block[f & ((1 << FRAME_BLOCK_SHIFT) - 1)] = new Page(start, start + pageSize, pageSize, false);
+        }
+        return pg;
+    }
+
+    private void take(Page frame, int words) {
+        int f = frame.pageStart / pageSize;
+        if (!busy.get(f)) {
+            busy.set(f);
+            usedFrames++;
+            accessBits.reserve(f);
+        }
+        frame.inUse = true;
+        frame.used = words;
+    }
+
+    private void release(Page frame) {
+        int f = frame.pageStart / pageSize;
+        if (busy.get(f)) {
+            busy.clear(f);
+            usedFrames--;
+        }
+        frame.inUse = false;
+        frame.used = 0;
+        frame.kind = '-'; // o proximo dono marca o seu (ProcessManager.markPageKinds)
+    }
+
+    public int usedFrames() {
+        return usedFrames;
     }
 
+    // proximo frame ocupado a partir de 'from'; -1 se nao houver
+    int nextBusyFrame(int from) {
+        return busy.nextSetBit(from);
+    }
+
+    public MemoryManager(Memory mem){
+        this(mem, 8);
+    }
+
+    // Liga paginas grandes de 'frames' frames contiguos (alinhados) para imagens que ocupem
+    // ao menos uma pagina grande inteira; 0 desliga.
+    public void setHugePages(int frames) {
+        hugeFrames = frames > 1 ? frames : 0;
+    }
+
+    public int getHugePageSize() {
+        return hugeFrames * pageSize;
+    }
+
+    // Tabela de paginas mista: primeiro as paginas grandes, na ordem logica, depois as de tamanho base.
+    // Toda pagina grande da tabela tem o mesmo tamanho (a CPU conta com isso na traducao).
     public ArrayList<Page> alloc(Word[] p) {
         int programSize = p.length;
-        int requiredPages = (int) Math.ceil(programSize / 8.0);
+        int requiredPages = (programSize + pageSize - 1) / pageSize;
         ArrayList<Page> myProgramPages = new ArrayList<>();
 
-        int freePages = 0;
-        for(Page pg : pageList) {
-            if(!pg.inUse) freePages++;
-        }
+        int freePages = frameCount - usedFrames;
 
         if(freePages < requiredPages) {
             System.out.println("Sem páginas suficientes, preciso de" + requiredPages + " pages, mas temos apenas " + freePages + " disponiveis");
@@ -31,18 +109,295 @@ public class MemoryManager {
         }
 
         int loadedWords = 0;
-        for(Page pg : pageList) {
-            if(!pg.inUse && loadedWords < programSize) {
-                pg.inUse = true;
-                myProgramPages.add(pg);
-
-                for(int i = 0; i < pg.size && loadedWords < programSize; i++) {
-                    mem.pos[pg.pageStart + i] = p[loadedWords++];
+        if (hugeFrames > 0) {
+            int hugeSize = hugeFrames * pageSize;
+            for (int f = 0; programSize - loadedWords >= hugeSize; f += hugeFrames) {
+                f = busy.nextClearBit(f) / hugeFrames * hugeFrames; // proximo trecho alinhado com frame livre
+                if (f + hugeFrames > frameCount) {
+                    break;
+                }
+                if (runIsFree(f, hugeFrames)) {
+                    Page huge = new Page(f * pageSize, f * pageSize + hugeSize, hugeSize, true);
+                    for (int i = 0; i < hugeFrames; i++) {
+                        Page frame = frame(f + i);
+                        take(frame, frame.size);
+                    }
+                    huge.used = hugeSize;
+                    for (int i = 0; i < hugeSize; i++) {
+                        load(huge.pageStart + i, p[loadedWords++]);
+                    }
+                    myProgramPages.add(huge);
                 }
             }
         }
 
+        for (int f = busy.nextClearBit(0); f < frameCount && loadedWords < programSize; f = busy.nextClearBit(f + 1)) {
+            Page pg = frame(f);
+            myProgramPages.add(pg);
+
+            int i = 0;
+            for(; i < pg.size && loadedWords < programSize; i++) {
+                load(pg.pageStart + i, p[loadedWords++]);
+            }
+            take(pg, i);
+        }
+        if (loadedWords < programSize) { // nao deveria ocorrer (livres conferidos acima): desfaz a carga parcial
+            free(myProgramPages);
+            return new ArrayList<>();
+        }
+
+        verifyDirectAddresses(myProgramPages);
+        clearAccessBits(myProgramPages); // a carga e do SO, nao conta como acesso do processo
         return myProgramPages;
     }
-    
+
+    // Decodificacao na carga: enderecos diretos dentro do espaco logico sao verificados uma vez aqui
+    private void verifyDirectAddresses(List<Page> pages) {
+        int logicalSize = 0;
+        for (Page pg : pages) {
+            logicalSize += pg.size;
+        }
+        Word w = new Word(Opcode.___, -1, -1, -1);
+        for (Page pg : pages) {
+            for (int a = pg.pageStart; a < pg.pageStart + pg.used; a++) {
+                mem.read(a, w);
+                CPU.verify(w, logicalSize);
+                mem.setVerified(a, w.verified);
+            }
+        }
+    }
+
+    // Frames livres de tamanho base para um segmento compartilhado, zerados (DATA 0).
+    // Lista vazia se nao houver frames suficientes.
+    public ArrayList<Page> allocFrames(int words) {
+        int required = (words + pageSize - 1) / pageSize;
+        ArrayList<Page> frames = new ArrayList<>();
+        for (int f = busy.nextClearBit(0); f < frameCount && frames.size() < required; f = busy.nextClearBit(f + 1)) {
+            frames.add(frame(f));
+        }
+        if (frames.size() < required) {
+            return new ArrayList<>();
+        }
+        for (Page pg : frames) {
+            take(pg, pg.size);
+            mem.fill(pg.pageStart, pg.size, 0);
+        }
+        clearAccessBits(frames);
+        return frames;
+    }
+
+    // a memoria guarda os campos da palavra, nunca a Word da imagem: STD/STX nao podem mexer na
+    // imagem do programa nem em outra instancia dele
+    private void load(int addr, Word w) {
+        mem.set(addr, w.opc, w.ra, w.rb, w.p);
+    }
+
+    // frame entregue a um novo dono: sem bits R/D nem historico de referencias do dono anterior
+    private void clearAccessBits(List<Page> pages) {
+        for (Page pg : pages) {
+            for (int f = pg.pageStart / pageSize; f < (pg.pageEnd + pageSize - 1) / pageSize; f++) {
+                accessBits.set(f, 0);
+                setLastReference(f, 0);
+            }
+        }
+    }
+
+    private long lastReference(int f) {
+        return workingSet == null ? 0 : workingSet.lastReference(f);
+    }
+
+    private void setLastReference(int f, long sample) {
+        if (workingSet != null) {
+            workingSet.setLastReference(f, sample);
+        }
+    }
+
+    private boolean runIsFree(int firstFrame, int frames) {
+        int next = busy.nextSetBit(firstFrame);
+        return next < 0 || next >= firstFrame + frames;
+    }
+
+    public int freeFrames() {
+        return frameCount - usedFrames;
+    }
+
+    // Devolve as paginas de um processo; pagina grande libera cada frame que ela cobre
+    public void free(List<Page> pages) {
+        for (Page page : pages) {
+            if (page.size > pageSize) {
+                for (int f = page.pageStart / pageSize; f < page.pageEnd / pageSize; f++) {
+                    release(frame(f));
+                }
+                page.inUse = false;
+                page.used = 0;
+            } else {
+                release(page);
+            }
+            for (int f = page.pageStart / pageSize; f < page.pageEnd / pageSize; f++) {
+                setLastReference(f, 0);
+            }
+            mem.clear(page.pageStart, page.pageEnd); // conteudo nao vaza para o proximo dono
+        }
+    }
+
+    // ---------------- compactacao ----------------
+
+    // Compacta os processos dados: cada um passa a ocupar um trecho contiguo de frames, o mais baixo
+    // possivel, contornando os frames que nao podem mover (processos fora da lista). As listas de
+    // paginas sao atualizadas no lugar (mesma lista que o PCB e a CPU enxergam); quem chama garante
+    // que nenhum deles esta executando. Retorna quantos processos mudaram de frames.
+    public int compact(List<? extends List<Page>> movable) {
+        int frames = frameCount;
+        boolean[] occupied = new boolean[frames];
+        for (int f = busy.nextSetBit(0); f >= 0; f = busy.nextSetBit(f + 1)) {
+            occupied[f] = true;
+        }
+        List<List<Page>> procs = new ArrayList<>();
+        for (List<Page> pages : movable) {
+            boolean basePagesOnly = !pages.isEmpty();
+            for (Page pg : pages) {
+                basePagesOnly &= pg.size == pageSize && pg.inUse;
+            }
+            if (basePagesOnly) {                 // paginas grandes ja sao contiguas e ficam onde estao
+                procs.add(pages);
+                for (Page pg : pages) {
+                    occupied[pg.pageStart / pageSize] = false;
+                }
+            }
+        }
+        // quem esta mais abaixo e planejado primeiro, para deslizar tudo em direcao ao inicio
+        procs.sort((a, b) -> Integer.compare(lowestFrame(a), lowestFrame(b)));
+
+        // planejamento: primeiro trecho livre que caiba; se os fixos impedirem, os frames livres mais baixos
+        int[][] plan = new int[procs.size()][];
+        for (int k = 0; k < procs.size(); k++) {
+            int n = procs.get(k).size();
+            int[] dest = new int[n];
+            int start = firstFreeRun(occupied, n);
+            for (int i = 0, f = Math.max(start, 0); i < n; f++) {
+                if (start >= 0 || !occupied[f]) {
+                    dest[i++] = f;
+                }
+            }
+            for (int f : dest) {
+                occupied[f] = true;
+            }
+            plan[k] = dest;
+        }
+
+        // execucao: guarda o conteudo de todos, libera os frames antigos e escreve nos novos
+        Word[][] saved = new Word[procs.size()][];
+        int[][] used = new int[procs.size()][];
+        byte[][] bits = new byte[procs.size()][]; // bits R/D e ultima referencia acompanham o conteudo
+        long[][] refs = new long[procs.size()][];
+        char[][] kinds = new char[procs.size()][]; // tipo do conteudo (C/D/M) tambem
+        boolean[] vacated = new boolean[frames];
+        for (int k = 0; k < procs.size(); k++) {
+            List<Page> pages = procs.get(k);
+            saved[k] = new Word[pages.size() * pageSize];
+            used[k] = new int[pages.size()];
+            bits[k] = new byte[pages.size()];
+            refs[k] = new long[pages.size()];
+            kinds[k] = new char[pages.size()];
+            for (int i = 0; i < pages.size(); i++) {
+                Page pg = pages.get(i);
+                for (int a = 0; a < pageSize; a++) {
+                    saved[k][i * pageSize + a] = mem.get(pg.pageStart + a); // com a marca de verificado
+                }
+                used[k][i] = pg.used;
+                kinds[k][i] = pg.kind;
+                bits[k][i] = (byte) accessBits.get(pg.pageStart / pageSize);
+                refs[k][i] = lastReference(pg.pageStart / pageSize);
+                vacated[pg.pageStart / pageSize] = true;
+                release(pg);
+            }
+        }
+        int moved = 0;
+        for (int k = 0; k < procs.size(); k++) {
+            List<Page> pages = procs.get(k);
+            boolean changed = false;
+            for (int i = 0; i < pages.size(); i++) {
+                Page frame = frame(plan[k][i]);
+                changed |= frame != pages.get(i);
+                for (int a = 0; a < pageSize; a++) {
+                    mem.set(frame.pageStart + a, saved[k][i * pageSize + a]);
+                }
+                take(frame, used[k][i]);
+                frame.kind = kinds[k][i];
+                accessBits.set(plan[k][i], bits[k][i]);
+                setLastReference(plan[k][i], refs[k][i]);
+                pages.set(i, frame);
+            }
+            if (changed) {
+                moved++;
+            }
+        }
+        // frames desocupados nao devem continuar apontando para palavras agora em uso noutro lugar
+        for (int f = 0; f < frames; f++) {
+            if (vacated[f] && !busy.get(f)) {
+                accessBits.set(f, 0);
+                setLastReference(f, 0);
+                mem.clear(frame(f).pageStart, frame(f).pageEnd);
+            }
+        }
+        return moved;
+    }
+
+    private int lowestFrame(List<Page> pages) {
+        int low = Integer.MAX_VALUE;
+        for (Page pg : pages) {
+            low = Math.min(low, pg.pageStart / pageSize);
+        }
+        return low;
+    }
+
+    private static int firstFreeRun(boolean[] occupied, int n) {
+        int run = 0;
+        for (int f = 0; f < occupied.length; f++) {
+            run = occupied[f] ? 0 : run + 1;
+            if (run == n) {
+                return f - n + 1;
+            }
+        }
+        return -1;
+    }
+
+    // quantidade de trechos contiguos na tabela de paginas (1 = totalmente contigua)
+    public static int runs(List<Page> pages) {
+        int runs = 0;
+        for (int i = 0; i < pages.size(); i++) {
+            if (i == 0 || pages.get(i).pageStart != pages.get(i - 1).pageEnd) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
+    // Fragmentacao externa: frames livres, trechos livres e o maior trecho livre
+    public String fragmentationReport() {
+        int free = frameCount - usedFrames;
+        int freeRuns = 0;
+        int largest = 0;
+        for (int f = busy.nextClearBit(0); f < frameCount; f = busy.nextClearBit(f)) {
+            int end = busy.nextSetBit(f);
+            end = end < 0 ? frameCount : end;
+            freeRuns++;
+            largest = Math.max(largest, end - f);
+            f = end;
+        }
+        double external = free == 0 ? 0 : 1.0 - (double) largest / free;
+        return String.format("livres: %d frames em %d trechos, maior trecho: %d, fragmentacao externa: %.1f%%",
+                free, freeRuns, largest, external * 100);
+    }
+
+    // palavras alocadas e nao usadas pelas imagens dos processos (sobra da ultima pagina)
+    public int internalFragmentation() {
+        int waste = 0;
+        for (int f = busy.nextSetBit(0); f >= 0; f = busy.nextSetBit(f + 1)) {
+            Page pg = frame(f);
+            waste += pg.size - pg.used;
+        }
+        return waste;
+    }
+
 }
@@ -0,0 +1,52 @@
+package Software;
+
+// Fila de mensagens limitada (buffer circular de inteiros) identificada por uma chave.
+// Quem envia com a fila cheia ou recebe com ela vazia espera em senders/receivers, bloqueado.
+// Todo acesso e feito com o processLock do ProcessManager.
+public class MessageQueue {
+    public static final int CAPACITY = 16;
+
+    final int key;
+    private final int[] values = new int[CAPACITY];
+    private final long[] sentAt = new long[CAPACITY]; // nanoTime do envio, para a latencia
+    private int head;
+    private int count;
+    final PCBQueue receivers = new PCBQueue(); // esperando mensagem (fila vazia)
+    final PCBQueue senders = new PCBQueue();   // esperando espaco (fila cheia)
+    long sent;
+    long received;
+
+    MessageQueue(int key) {
+        this.key = key;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    boolean isFull() {
+        return count == CAPACITY;
+    }
+
+    int size() {
+        return count;
+    }
+
+    void offer(int value, long now) {
+        int tail = (head + count) % CAPACITY;
+        values[tail] = value;
+        sentAt[tail] = now;
+        count++;
+    }
+
+    long headSentAt() {
+        return sentAt[head];
+    }
+
+    int poll() {
+        int value = values[head];
+        head = (head + 1) % CAPACITY;
+        count--;
+        return value;
+    }
+}
@@ -0,0 +1,79 @@
+package Software;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+// Recebe processos migrados de outra instancia pela rede local (loopback). Protocolo por conexao:
+// cliente manda int tamanho + foto (ProcessSnapshot); servidor responde o novo PID, ou -1 se recusou.
+public class MigrationServer extends Thread {
+    private static final int MAX_BLOB = 16 * 1024 * 1024;
+
+    private final ProcessManager processManager;
+    private final ServerSocket server;
+
+    public MigrationServer(ProcessManager processManager, int port) throws IOException {
+        this.processManager = processManager;
+        this.server = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+        this.setName("Migration-Server-" + port);
+        this.setDaemon(true);
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        while (!server.isClosed()) {
+            try (Socket s = server.accept();
+                 DataInputStream in = new DataInputStream(s.getInputStream());
+                 DataOutputStream out = new DataOutputStream(s.getOutputStream())) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_BLOB) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                byte[] blob = new byte[length];
+                in.readFully(blob);
+                int pid = -1;
+                try {
+                    ProcessManager.PCB pcb = processManager.importProcess(blob);
+                    if (pcb != null) {
+                        pid = pcb.pid;
+                    }
+                } catch (IOException e) {
+                    System.out.println("Migração recusada: " + e.getMessage());
+                }
+                out.writeInt(pid);
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    System.err.println("Erro no servidor de migração: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public void stopServer() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            // ja fechado
+        }
+    }
+
+    // Envia a foto para o servidor da porta dada; retorna o PID no destino (-1 = recusado)
+    public static int send(byte[] blob, int port) throws IOException {
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port);
+             DataOutputStream out = new DataOutputStream(s.getOutputStream());
+             DataInputStream in = new DataInputStream(s.getInputStream())) {
+            out.writeInt(blob.length);
+            out.write(blob);
+            out.flush();
+            return in.readInt();
+        }
+    }
+}
@@ -7,5 +7,7 @@ public enum Opcode {
     JMPIGK, JMPILK, JMPIEK, JMPIGT,
     ADDI, SUBI, ADD, SUB, MULT,    // matematicos
     LDI, LDD, STD, LDX, STX, MOVE, // movimentacao
+    CAS,                           // troca atomica (compare-and-swap)
+    BMOVE, BFILL,                  // copia e preenchimento de blocos de memoria
     SYSCALL, STOP                  // chamada de sistema e parada
 }
@@ -0,0 +1,116 @@
+package Software;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import Software.ProcessManager.PCB;
+
+// Fila intrusiva de PCBs: cada PCB carrega seu proprio no (Node), entao inserir,
+// retirar do inicio e remover do meio da fila sao todos O(1), sem busca linear.
+// Um no so pode estar em uma fila por vez.
+public class PCBQueue implements Iterable<PCB> {
+
+    public static class Node {
+        public final PCB pcb;
+        private Node prev;
+        private Node next;
+        private PCBQueue owner; // fila onde o no esta encadeado, null se em nenhuma
+
+        public Node(PCB pcb) {
+            this.pcb = pcb;
+        }
+
+        public PCBQueue owner() {
+            return owner;
+        }
+    }
+
+    private Node head;
+    private Node tail;
+    private int size;
+
+    public void add(Node n) {
+        if (n.owner != null) {
+            n.owner.remove(n);
+        }
+        n.owner = this;
+        n.prev = tail;
+        n.next = null;
+        if (tail == null) {
+            head = n;
+        } else {
+            tail.next = n;
+        }
+        tail = n;
+        size++;
+    }
+
+    public PCB peek() {
+        return head == null ? null : head.pcb;
+    }
+
+    public PCB poll() {
+        if (head == null) {
+            return null;
+        }
+        Node n = head;
+        remove(n);
+        return n.pcb;
+    }
+
+    // Desencadeia o no desta fila; retorna false se o no nao pertence a ela
+    public boolean remove(Node n) {
+        if (n.owner != this) {
+            return false;
+        }
+        if (n.prev == null) {
+            head = n.next;
+        } else {
+            n.prev.next = n.next;
+        }
+        if (n.next == null) {
+            tail = n.prev;
+        } else {
+            n.next.prev = n.prev;
+        }
+        n.prev = null;
+        n.next = null;
+        n.owner = null;
+        size--;
+        return true;
+    }
+
+    public boolean contains(Node n) {
+        return n.owner == this;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<PCB> iterator() {
+        return new Iterator<PCB>() {
+            private Node cur = head;
+
+            @Override
+            public boolean hasNext() {
+                return cur != null;
+            }
+
+            @Override
+            public PCB next() {
+                if (cur == null) {
+                    throw new NoSuchElementException();
+                }
+                PCB pcb = cur.pcb;
+                cur = cur.next;
+                return pcb;
+            }
+        };
+    }
+}
@@ -1,10 +1,15 @@
 package Software;
 
 public class Page {
+    // bits de acesso por frame (MemoryManager.accessBits, Hardware.AccessBits), ligados pela CPU a cada acesso traduzido
+    public static final byte REFERENCED = 1; // lido, escrito ou buscado desde a ultima amostra
+    public static final byte DIRTY = 2;      // escrito desde a carga
     public int pageStart;
     public int pageEnd;
     public int size;
     public boolean inUse;
+    public int used; // palavras da imagem do processo carregadas nesta pagina (size - used = fragmentacao interna)
+    public char kind = '-'; // conteudo segundo a analise do programa: C codigo, D dados, M misturado
 
     public Page(int pages, int pagee, int size, boolean use){
         this.pageStart = pages;
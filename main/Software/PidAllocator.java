@@ -0,0 +1,42 @@
+package Software;
+
+// Alocador de PIDs: os PIDs liberados entram numa fila circular de inteiros e sao reciclados na
+// ordem em que foram liberados (FIFO), e so quando a fila passa de QUARANTINE: um PID recem-liberado
+// nao volta logo, entao quem ainda guarda o PID de um processo que acabou (kill, migracao, saida de
+// ps) nao acerta outro processo por engano. Sem PID reciclavel, cria um novo.
+public class PidAllocator {
+    public static final int QUARANTINE = 64; // PIDs liberados que esperam antes de qualquer reuso
+
+    private int nextPID = 1;       // PID 0 nunca e usado
+    private int[] free = new int[128];
+    private int head = 0;          // proximo a reciclar
+    private int freeCount = 0;
+
+    public int allocate() {
+        if (freeCount > QUARANTINE) {
+            int pid = free[head];
+            head = (head + 1) % free.length;
+            freeCount--;
+            return pid;
+        }
+        return nextPID++;
+    }
+
+    public void release(int pid) {
+        if (freeCount == free.length) {
+            int[] bigger = new int[free.length * 2];
+            for (int i = 0; i < freeCount; i++) {
+                bigger[i] = free[(head + i) % free.length];
+            }
+            free = bigger;
+            head = 0;
+        }
+        free[(head + freeCount) % free.length] = pid;
+        freeCount++;
+    }
+
+    // maior PID ja entregue + 1, usado para dimensionar a tabela de processos
+    public int highWater() {
+        return nextPID;
+    }
+}
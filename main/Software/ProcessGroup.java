@@ -0,0 +1,44 @@
+package Software;
+
+// Grupo de processos com cotas: fatia da CPU (peso na divisao justa entre grupos), maximo de
+// frames somados dos membros e orcamento de ciclos simulados por processo. Quem estoura o
+// orcamento recebe intQuota e e terminado, ou suspenso por 'throttleMs' e recebe um novo orcamento.
+// Campos alterados so com o processLock do ProcessManager.
+public class ProcessGroup {
+    private static final long SCALE = 1024; // resolucao do tempo virtual (ciclos * SCALE / peso)
+
+    public final String name;
+    public int weight = 1;       // peso na divisao da CPU entre grupos
+    public int maxFrames;        // 0 = sem limite
+    public long cycleBudget;     // ciclos por processo; 0 = sem limite
+    public long throttleMs;      // 0 = terminar quem estourar; > 0 = suspender por este tempo
+
+    int members;                 // processos do grupo ainda no sistema
+    int framesUsed;              // frames carregados dos membros
+    long vruntime;               // ciclos consumidos ponderados pelo peso: menor vai primeiro
+    PCBQueue ready;              // prontos do grupo (criada pela ReadyQueue no primeiro)
+    public long cycles;          // ciclos consumidos pelos membros
+    public long killed;          // processos terminados por cota
+    public long throttled;       // suspensoes por cota
+
+    public ProcessGroup(String name) {
+        this.name = name;
+    }
+
+    void charge(long delta) {
+        cycles += delta;
+        vruntime += delta * SCALE / weight;
+    }
+
+    // cabe mais 'frames' sem passar do limite?
+    boolean fits(int frames) {
+        return maxFrames <= 0 || framesUsed + frames <= maxFrames;
+    }
+
+    public String describe() {
+        return name + ": peso " + weight + ", " + members + " processo(s), frames " + framesUsed + "/"
+                + (maxFrames > 0 ? String.valueOf(maxFrames) : "-") + ", orcamento "
+                + (cycleBudget > 0 ? cycleBudget + " ciclos (" + (throttleMs > 0 ? "pausa " + throttleMs + " ms" : "termina") + ")" : "-")
+                + ", " + cycles + " ciclos usados, " + killed + " terminado(s), " + throttled + " pausa(s)";
+    }
+}
@@ -1,16 +1,31 @@
 package Software;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.HashMap;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import Hardware.*;
 import Programs.Program;
+import Programs.ProgramAnalysis;
 
 public class ProcessManager {
-    private Queue<PCB> readyQueue;
-    private Queue<PCB> blockedQueue; // Queue for processes waiting on I/O
+    private ReadyQueue readyQueue;
+    private PCBQueue blockedQueue; // Queue for processes waiting on I/O
+    private PCBQueue runningGuests; // modo GUEST_THREADS: convidados executando nos seus nucleos
+
+    // Admissao: processos NEW esperam aqui (uma fila por prioridade, 0 = mais alta) ate haver
+    // memoria e vaga no limite de processos ativos
+    public static final int PRIORITY_LEVELS = 10;
+    public static final int DEFAULT_PRIORITY = 5;
+    private final PCBQueue[] admissionQueues = new PCBQueue[PRIORITY_LEVELS];
+    private int maxActive = 0;    // processos admitidos ao mesmo tempo; 0 = sem limite
+    private int maxQueued = 1024; // tamanho maximo da fila de admissao (contrapressao)
+    private final ProcessTable processTable = new ProcessTable(); // PCBs indexados por PID
     private PCB runningProcess;
     private MemoryManager memoryManager;
     private CPU cpu;
@@ -18,16 +33,85 @@ public class ProcessManager {
     private InterruptHandling interruptHandler;
     private volatile boolean schedulerRunning = true;
 
+    // Modo de execucao: um escalonador dirigindo a CPU unica (padrao), ou uma thread por processo
+    private ExecutionMode mode = ExecutionMode.SCHEDULER;
+    private GuestThreadExecutor guestExecutor;
+    private final ThreadLocal<PCB> currentGuest = new ThreadLocal<>();
+
     // Para sincronização entre threads
     private final Lock processLock = new ReentrantLock();
+    private final Condition workAvailable = processLock.newCondition(); // escalonador dorme aqui quando ocioso
+    private boolean cpuBusy = false; // CPU unica executando instrucoes fora do processLock
     private SchedulerThread schedulerThread;
+    private long cycleQuantum = 0; // fatia em ciclos simulados; 0 = fatia pelo relogio do hospedeiro
+    // Caminho rapido: sem outro processo pronto, a CPU roda sem timer nem fatia ate syscall, falta,
+    // STOP ou a chegada de outro processo (makeReady preempta). soloRun: a CPU esta nesse modo.
+    private boolean soloFastPath = true;
+    private boolean soloRun = false;
+    public long soloDispatches; // despachos feitos sem fatia
+    public long preemptions;    // trocas de contexto por fim de fatia
+    public static final long SHORT_JOB = 64; // instrucoes no pior caso abaixo das quais nao ha fatia
+    public static final int SHORT_JOB_SLACK = 4; // programa curto roda com fatia de SLACK x SHORT_JOB x maior custo
+
+    // Grupos de processos com cotas (CPU por peso, frames, orcamento de ciclos); todo processo
+    // pertence a um, o padrao nao tem limites
+    public static final String DEFAULT_GROUP = "padrao";
+    private final HashMap<String, ProcessGroup> groups = new HashMap<>();
+    private java.util.Timer throttleTimer; // acorda os processos suspensos por cota
+    private final CacheStats finishedCache = new CacheStats(); // contadores de cache dos processos ja terminados
+    public final WorkingSet workingSet; // amostras dos bits de acesso dos frames (sampleWorkingSets)
+    // tempo entre um processo ficar pronto (criacao ou fim de E/S) e ganhar a CPU
+    public final LatencyHistogram dispatchLatency = new LatencyHistogram("Latencia de despacho");
+
+    // IPC: segmentos compartilhados e filas de mensagens, por chave (acesso com processLock)
+    private final HashMap<Integer, SharedSegment> sharedSegments = new HashMap<>();
+    private final HashMap<Integer, MessageQueue> messageQueues = new HashMap<>();
+    // tempo entre o envio de uma mensagem e o receptor poder usa-la
+    public final LatencyHistogram messageLatency = new LatencyHistogram("Latencia de mensagem");
+    // semaforos e mutexes dos convidados, por chave
+    private final HashMap<Integer, SyncObject> semaphores = new HashMap<>();
+    private final HashMap<Integer, SyncObject> mutexes = new HashMap<>();
+    // tempo entre liberar (V/unlock) e o processo que esperava voltar a executar
+    public final LatencyHistogram syncLatency = new LatencyHistogram("Latencia de passagem semaforo/mutex");
 
     public ProcessManager(MemoryManager memoryManager, HW hw) {
         this.memoryManager = memoryManager;
         this.hw = hw;
         this.cpu = hw.cpu;
-        this.readyQueue = new LinkedList<>();
-        this.blockedQueue = new LinkedList<>();
+        this.readyQueue = new ReadyQueue();
+        this.blockedQueue = new PCBQueue();
+        this.runningGuests = new PCBQueue();
+        this.workingSet = new WorkingSet(memoryManager);
+        groups.put(DEFAULT_GROUP, new ProcessGroup(DEFAULT_GROUP));
+        for (int i = 0; i < PRIORITY_LEVELS; i++) {
+            admissionQueues[i] = new PCBQueue();
+        }
+    }
+
+    public enum ExecutionMode {
+        SCHEDULER, GUEST_THREADS
+    }
+
+    // Liga o modo em que cada processo convidado roda numa thread propria (virtual, se houver)
+    // com a sua CPU; 'carriers' limita quantos executam instrucoes ao mesmo tempo.
+    public void useGuestThreads(int carriers) {
+        try {
+            processLock.lock();
+            if (processTable.size() > 0) {
+                System.out.println("Modo de execucao so pode ser trocado sem processos no sistema");
+                return;
+            }
+            guestExecutor = new GuestThreadExecutor(carriers);
+            mode = ExecutionMode.GUEST_THREADS;
+            System.out.println("Modo GUEST_THREADS: " + carriers + " carriers, threads "
+                    + (guestExecutor.usesVirtualThreads() ? "virtuais" : "de plataforma"));
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return mode;
     }
 
     public void setInterruptHandler(InterruptHandling ih) {
@@ -35,6 +119,12 @@ public class ProcessManager {
     }
 
     public void startSchedulerThread() {
+        if (mode == ExecutionMode.GUEST_THREADS) {
+            return; // cada convidado tem sua propria thread, nao ha escalonador
+        }
+        if (schedulerThread != null && schedulerThread.isAlive()) {
+            return; // ja existe um escalonador dirigindo a CPU
+        }
         this.schedulerThread = new SchedulerThread(this);
         this.schedulerThread.start();
     }
@@ -56,32 +146,87 @@ public class ProcessManager {
         public int pid; //Id unico do processo
         public int pc; //programcounter do ultimo running
         public ArrayList<Page> pages; // lista de páginas do processo
-        public int[] registers; // registradores da última vez que ele rodou
+        public int[] registers; // registradores do processo (o array do seu contexto: a CPU escreve direto nele)
+        final CpuContext context = new CpuContext();
         public ProcessState state; // estado atual do processo
         public String programName; // Nome do programa
+        public int priority = DEFAULT_PRIORITY; // prioridade de admissao
+        Program program; // imagem ainda nao carregada enquanto NEW
+        final PCBQueue.Node node = new PCBQueue.Node(this); // no intrusivo para readyQueue/blockedQueue
+        final PCBQueue.Node stateNode = new PCBQueue.Node(this); // no da fila do estado na ProcessTable
+        CPU core; // CPU onde o processo executa: a CPU unica, ou um nucleo proprio no modo GUEST_THREADS
+        Thread guestThread; // thread do convidado no modo GUEST_THREADS
+        int ioAddr = -1; // endereco fisico onde a leitura pendente sera entregue
+        volatile boolean killed; // kill pedido enquanto o processo estava na CPU
+        long readySince; // nanoTime em que ficou pronto por criacao ou fim de E/S (0 = requeue por preempcao)
+        final PCBQueue.Node waitNode = new PCBQueue.Node(this); // no para a fila de espera de um objeto de IPC/sincronizacao
+        int msgValue; // mensagem de um remetente bloqueado com a fila cheia
+        long msgSentAt; // nanoTime do envio da mensagem pendente de um remetente bloqueado
+        long handoffAt; // nanoTime em que outro processo o acordou entregando algo (0 = nada)
+        LatencyHistogram handoffLatency; // onde registrar o tempo ate ele voltar a executar
+        final ArrayList<SyncObject> mutexesHeld = new ArrayList<>(); // devolvidos se o processo terminar
+        final ArrayList<SharedSegment> segments = new ArrayList<>(); // segmentos anexados
+        public long cycles; // ciclos simulados ja cobrados do processo
+        long boundedInstructions = -1; // pior caso da analise estatica (programa sem laco); -1 = desconhecido
+        public ProcessGroup group; // cotas a que o processo esta sujeito
+        int frames; // frames carregados, contados no grupo
+        long budgetBase; // cycles quando o orcamento atual comecou
+        boolean throttled; // bloqueado por ter estourado o orcamento (nao por E/S)
+        public int workingSet;     // frames referenciados na janela de amostras (WorkingSet)
+        public int workingSetPeak; // maior working set ja amostrado
+        public int dirtyFrames;    // frames escritos desde a carga, na ultima amostra
+        private long cycleMark = -1; // core.cycles quando a cobranca comecou (-1 = fora da CPU)
+        public final CacheStats cacheStats = new CacheStats(); // acertos/falhas de cache do processo
 
         public PCB(int pid, ArrayList<Page> pages, String programName) {
             this.pid = pid;
             this.pages = pages;
             this.pc = 0;
-            this.registers = new int[10];
-            this.state = ProcessState.READY;
+            this.registers = context.reg;
+            this.state = ProcessState.NEW;
             this.programName = programName;
+            this.core = cpu;
+        }
+
+        void setState(ProcessState newState) {
+            processTable.changeState(this, newState);
         }
 
         public void saveContext() {
-            this.pc = cpu.pc;
-            for (int i = 0; i < cpu.reg.length; i++) {
-                this.registers[i] = cpu.reg[i];
-            }
+            chargeCycles();
+            this.pc = core.pc; // registradores: a CPU ja escreveu no array do contexto
         }
 
         public void loadContext() {
-            //carrega os registradores
-            for (int i = 0; i < this.registers.length; i++) {
-                cpu.reg[i] = this.registers[i];
+            // troca de referencia: a CPU passa a usar os registradores do contexto deste processo
+            context.pc = this.pc;
+            core.switchTo(context, this.pages);
+            core.setCacheStats(cacheStats);
+            chargeCycles();
+            cycleMark = core.cycles;
+            armBudget();
+        }
+
+        // arma na CPU o que resta do orcamento de ciclos do grupo
+        void armBudget() {
+            core.armBudget(group.cycleBudget > 0 ? group.cycleBudget - (cycles - budgetBase) : Long.MAX_VALUE);
+        }
+
+        // Cobra os ciclos executados desde a ultima marca. Na CPU unica o processo sai dela;
+        // um nucleo proprio (GUEST_THREADS) continua contando so para ele.
+        void chargeCycles() {
+            if (cycleMark >= 0) {
+                long delta = core.cycles - cycleMark;
+                cycles += delta;
+                readyQueue.charge(group, delta);
+                cycleMark = core == cpu ? -1 : core.cycles;
             }
-            cpu.setContext(this.pages, this.pc);
+        }
+
+        // ciclos ate agora, incluindo a fatia em andamento (leitura sem lock, para exibicao)
+        public long cyclesUsed() {
+            long mark = cycleMark;
+            return mark >= 0 ? cycles + core.cycles - mark : cycles;
         }
     }
 
@@ -91,27 +236,163 @@ public class ProcessManager {
 
     // Cria um processo para o programa
     public PCB createProcess(Program program) {
+        return createProcess(program, DEFAULT_PRIORITY);
+    }
+
+    // Cria o processo em NEW na fila de admissao e admite o que couber. Retorna null so quando a
+    // fila de admissao esta cheia ou o programa nunca caberia na memoria.
+    public PCB createProcess(Program program, int priority) {
+        return createProcess(program, priority, DEFAULT_GROUP);
+    }
+
+    // Criacao dentro de um grupo existente; null se o grupo nao existe
+    public PCB createProcess(Program program, int priority, String groupName) {
         try {
             processLock.lock();
-            ArrayList<Page> pages = memoryManager.alloc(program.image);
-            if (pages.isEmpty()) {
-                System.out.println("Falha em alocar memória de um processo: " + program.name);
+            ProcessGroup group = groups.get(groupName);
+            if (group == null) {
+                System.out.println("Grupo inexistente: " + groupName);
                 return null;
             }
+            return createProcess(program, priority, 0, null, group);
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Criacao com contexto inicial: pc e registradores vem de uma foto quando o processo chega migrado
+    private PCB createProcess(Program program, int priority, int pc, int[] registers, ProcessGroup group) {
+        try {
+            processLock.lock();
+            int pagesNeeded = (program.image.length + memoryManager.pageSize - 1) / memoryManager.pageSize;
+            if (pagesNeeded > memoryManager.frameCount) {
+                System.out.println("Falha em alocar memória de um processo: " + program.name + " não cabe na memória");
+                return null;
+            }
+            if (group.maxFrames > 0 && pagesNeeded > group.maxFrames) {
+                System.out.println("Processo recusado: " + program.name + " precisa de " + pagesNeeded
+                        + " frames, acima do limite do grupo " + group.name + " (" + group.maxFrames + ")");
+                return null;
+            }
+            if (admissionQueued() >= maxQueued) {
+                System.out.println("Fila de admissão cheia (" + maxQueued + "), processo recusado: " + program.name);
+                return null;
+            }
+
+            ProgramAnalysis analysis = program.analysis();
+            if (analysis.infiniteLoops.length > 0) {
+                System.out.println("Aviso: " + program.name + " tem laco sem saida em "
+                        + java.util.Arrays.toString(analysis.infiniteLoops));
+            }
+            if (analysis.outOfImage.length > 0) {
+                System.out.println("Aviso: " + program.name + " desvia para fora da imagem em "
+                        + java.util.Arrays.toString(analysis.outOfImage));
+            }
 
-            PCB pcb = new PCB(generatePID(), pages, program.name);
-            readyQueue.add(pcb);
-            System.out.println("Process criado com PID: " + pcb.pid + " - " + program.name);
+            PCB pcb = new PCB(processTable.allocatePid(), new ArrayList<>(), program.name);
+            pcb.program = program;
+            pcb.boundedInstructions = pc == 0 ? analysis.maxInstructions : -1;
+            if (group.members == 0) {
+                // grupo voltando a ter processos nao ganha a CPU pelo tempo em que ficou parado
+                // (sem membros, nao esta no conjunto ordenado da readyQueue: pode mudar o vruntime)
+                long floor = Long.MAX_VALUE;
+                for (ProcessGroup g : groups.values()) {
+                    if (g.members > 0) {
+                        floor = Math.min(floor, g.vruntime);
+                    }
+                }
+                if (floor != Long.MAX_VALUE) {
+                    group.vruntime = Math.max(group.vruntime, floor);
+                }
+            }
+            group.members++;
+            pcb.group = group;
+            pcb.priority = Math.max(0, Math.min(PRIORITY_LEVELS - 1, priority));
+            pcb.pc = pc;
+            if (registers != null) {
+                System.arraycopy(registers, 0, pcb.registers, 0, Math.min(registers.length, pcb.registers.length));
+            }
+            processTable.put(pcb);
+            admissionQueues[pcb.priority].add(pcb.node);
+            admitJobs();
+            if (pcb.state == ProcessState.NEW) {
+                System.out.println("Processo PID " + pcb.pid + " - " + program.name + " aguardando admissão (prioridade " + pcb.priority + ")");
+            }
             return pcb;
         } finally {
             processLock.unlock();
         }
     }
 
-    // Generate a unique process ID
-    private int nextPID = 1;
-    private int generatePID() {
-        return nextPID++;
+    // Admite processos NEW, em ordem de prioridade, enquanto houver vaga e memoria.
+    // A cabeca que nao cabe segura a fila, para processos grandes nao passarem fome; quem so
+    // espera pelo limite de frames do proprio grupo e pulado. (com processLock)
+    private void admitJobs() {
+        for (int level = 0; level < PRIORITY_LEVELS; level++) {
+            PCBQueue queue = admissionQueues[level];
+            while (!queue.isEmpty()) {
+                if (maxActive > 0 && activeCount() >= maxActive) {
+                    return;
+                }
+                PCB pcb = null;
+                for (PCB candidate : queue) {
+                    int need = (candidate.program.image.length + memoryManager.pageSize - 1) / memoryManager.pageSize;
+                    if (candidate.group.fits(need)) {
+                        pcb = candidate;
+                        break;
+                    }
+                }
+                if (pcb == null) {
+                    break; // todos deste nivel esperam o proprio grupo liberar frames
+                }
+                ArrayList<Page> pages = memoryManager.alloc(pcb.program.image);
+                if (pages.isEmpty()) {
+                    return;
+                }
+                queue.remove(pcb.node);
+                for (Page pg : pages) {
+                    pcb.frames += pg.size / memoryManager.pageSize;
+                }
+                pcb.group.framesUsed += pcb.frames;
+                markPageKinds(pages, pcb.program.analysis());
+                pcb.pages = pages;
+                pcb.program = null;
+                makeReady(pcb);
+                System.out.println("Process criado com PID: " + pcb.pid + " - " + pcb.programName);
+                if (mode == ExecutionMode.GUEST_THREADS) {
+                    startGuest(pcb);
+                }
+            }
+        }
+    }
+
+    // anota em cada pagina carregada se ela guarda codigo, dados ou os dois
+    private static void markPageKinds(ArrayList<Page> pages, ProgramAnalysis analysis) {
+        int start = 0;
+        for (Page pg : pages) {
+            pg.kind = analysis.pageKind(start, pg.size);
+            start += pg.size;
+        }
+    }
+
+    private int activeCount() {
+        return processTable.size() - processTable.count(ProcessState.NEW) - processTable.count(ProcessState.TERMINATED);
+    }
+
+    private int admissionQueued() {
+        return processTable.count(ProcessState.NEW);
+    }
+
+    // Limites de admissao: maximo de processos ativos (0 = sem limite) e tamanho da fila de espera
+    public void setAdmissionLimits(int maxActive, int maxQueued) {
+        try {
+            processLock.lock();
+            this.maxActive = Math.max(0, maxActive);
+            this.maxQueued = Math.max(1, maxQueued);
+            admitJobs();
+        } finally {
+            processLock.unlock();
+        }
     }
 
     // ESCALONA O NOVO PROCESSO (Round Robin)
@@ -119,12 +400,17 @@ public class ProcessManager {
         try {
             processLock.lock();
 
+            if (runningProcess != null && runningProcess.killed) {
+                terminateRunningProcess(); // kill chegou enquanto ele estava na CPU
+            }
+
             if (runningProcess != null) {
                 // SALVA O CONTEXTO DO PROCESSO ATUAL NO PCB
                 runningProcess.saveContext();
                 //ALTERA O PROCESSO PARA PRONTO E MOVO PARA A FILA DE PRONTOS
                 if (runningProcess.state == ProcessState.RUNNING) {
-                    runningProcess.state = ProcessState.READY;
+                    runningProcess.readySince = 0;
+                    runningProcess.setState(ProcessState.READY);
                     readyQueue.add(runningProcess);
                 }
             }
@@ -132,8 +418,13 @@ public class ProcessManager {
             // PEGA O PROXIMO PROCESSO DA FILA
             if (!readyQueue.isEmpty()) {
                 runningProcess = readyQueue.poll();
+                if (runningProcess.readySince != 0) {
+                    dispatchLatency.record(System.nanoTime() - runningProcess.readySince);
+                    runningProcess.readySince = 0;
+                }
+                recordHandoff(runningProcess);
                 //MUDA O STATUS PARA RUNNING
-                runningProcess.state = ProcessState.RUNNING;
+                runningProcess.setState(ProcessState.RUNNING);
                 //CARREGA O CONTEXTO NA CPU
                 runningProcess.loadContext();
                 System.out.println("Scheduled process PID: " + runningProcess.pid + " PC: " + runningProcess.pc);
@@ -147,19 +438,55 @@ public class ProcessManager {
     }
 
 
-    // Handle - interupção de relógio
-    public void handleTimerInterrupt() {
+    // Handle - interupção de relógio. Retorna true se o processo sai da CPU.
+    public boolean handleTimerInterrupt() {
         try {
             processLock.lock();
+            if (runningProcess == null) {
+                return true; // processo ja saiu da CPU (terminou ou bloqueou) nesta mesma instrucao
+            }
+            if (soloFastPath && readyQueue.isEmpty() && !runningProcess.killed) {
+                soloRun = true; // ninguem esperando: segue sem fatia ate alguem ficar pronto
+                return false;
+            }
             System.out.println("Interrupção de relógio " + runningProcess.pid + "- troca de contexto");
+            preemptions++;
             schedule();
+            return true;
         } finally {
             processLock.unlock();
         }
     }
 
-    // Ciclo principal do escalonador - chamado continuamente pela thread do escalonador
+    // Coloca o processo na fila de prontos e acorda o escalonador (chamado com processLock)
+    private void makeReady(PCB pcb) {
+        pcb.setState(ProcessState.READY);
+        pcb.readySince = System.nanoTime();
+        readyQueue.add(pcb);
+        workAvailable.signal();
+        if (soloRun) {
+            // o processo da CPU rodava sem fatia por estar sozinho: preempta agora
+            soloRun = false;
+            cpu.setInterupt(Interrupts.intTimer);
+        }
+    }
+
+    // Bloqueia a thread do escalonador ate haver processo para a CPU; ociosa nao consome CPU
+    public void awaitWork() throws InterruptedException {
+        try {
+            processLock.lock();
+            while (runningProcess == null && readyQueue.isEmpty()) {
+                workAvailable.await();
+            }
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Ciclo principal do escalonador - chamado pela thread do escalonador quando ha trabalho
     public void schedulerCycle() {
+        boolean solo;
+        boolean shortJob;
         try {
             processLock.lock();
 
@@ -167,30 +494,115 @@ public class ProcessManager {
             if (runningProcess == null && !readyQueue.isEmpty()) {
                 schedule();
             }
+            if (runningProcess == null) {
+                return;
+            }
+            // Coloca o processo para rodar
+            System.out.println("Process PID running: " + runningProcess.pid);
+            cpuBusy = true;
+            soloRun = soloFastPath && readyQueue.isEmpty();
+            if (soloRun) {
+                soloDispatches++;
+            }
+            // programa sem laco e curto (analise estatica): termina antes de uma fatia valer a pena
+            shortJob = runningProcess.boundedInstructions >= 0 && runningProcess.boundedInstructions <= SHORT_JOB;
+            solo = soloRun;
+        } finally {
+            processLock.unlock();
+        }
+
+        // Executa uma quantidade limitada de instruções fora do lock: criacao, kill e E/S
+        // nao esperam o fim da fatia; os tratadores de syscall/interrupcao pegam o lock
+        // Inicia a thread separada que monitora o tempo de execução, ou arma a fatia em ciclos simulados
+        TimerInterrupt timer = null;
+        if (solo) {
+            // sozinho: nada de timer; quem chegar depois preempta via makeReady
+        } else if (shortJob) {
+            // a analise e da imagem carregada, mas o programa pode reescrever o proprio codigo (STD,
+            // BMOVE) e criar um laco: fatia folgada em ciclos em vez de timer, nunca sem fatia
+            cpu.armQuantum((long) SHORT_JOB_SLACK * SHORT_JOB * cpu.getCycleCosts().max());
+        } else if (cycleQuantum > 0) {
+            cpu.armQuantum(cycleQuantum);
+        } else {
+            timer = new TimerInterrupt();
+            timer.start();
+        }
+        try {
+            cpu.run();
+        } finally {
+            // Para a thread do timer
+            if (timer != null) {
+                timer.stopTimer();
+            }
+            cpu.armQuantum(0);
+            try {
+                processLock.lock();
+                cpuBusy = false;
+                soloRun = false;
+            } finally {
+                processLock.unlock();
+            }
+        }
+    }
 
-            // Se houver um processo em execução, executa uma quantidade limitada de instruções
-            if (runningProcess != null) {
-                // Inicia a thread separada que monitora o tempo de execução
-                TimerInterrupt timer = new TimerInterrupt();
-                timer.start();
+    // Fatia de tempo do escalonador em ciclos simulados (0 volta ao timer do hospedeiro). Com ela
+    // a troca de contexto acontece sempre no mesmo ponto do programa, em qualquer maquina.
+    public void setCycleQuantum(long quantum) {
+        cycleQuantum = Math.max(0, quantum);
+    }
 
-                // Coloca o processo para rodar
-                System.out.println("Process PID running: " + runningProcess.pid);
-                cpu.run();
+    public long getCycleQuantum() {
+        return cycleQuantum;
+    }
 
-                // Para a thread do timer
-                timer.stopTimer();
+    // Liga/desliga o caminho rapido de processo unico (desligado: fatia sempre, como antes)
+    public void setSoloFastPath(boolean on) {
+        try {
+            processLock.lock();
+            soloFastPath = on;
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Liga (ou desliga, com null) a hierarquia de cache da CPU. So sem processos no sistema:
+    // os nucleos do modo GUEST_THREADS copiam a L1 quando sao criados.
+    public boolean setCache(Cache cache) {
+        try {
+            processLock.lock();
+            if (processTable.size() > 0) {
+                return false;
             }
+            cpu.setCache(cache);
+            return true;
         } finally {
             processLock.unlock();
         }
     }
 
-    // Teste se há processos que podem ser escalonados
-    public boolean hasProcessesToSchedule() {
+    // Contadores de cache por processo e o total (incluindo os que ja terminaram)
+    public void showCacheStats(PrintStream out) {
         try {
             processLock.lock();
-            return runningProcess != null || !readyQueue.isEmpty() || !blockedQueue.isEmpty();
+            Cache cache = cpu.getCache();
+            if (cache == null) {
+                out.println("Cache desligada.");
+            } else {
+                for (Cache c = cache; c != null; c = c.next()) {
+                    out.println(c.describe());
+                }
+            }
+            CacheStats total = new CacheStats();
+            total.add(finishedCache);
+            for (PCB pcb : processTable.list()) {
+                if (pcb.cacheStats.hits[0] + pcb.cacheStats.misses[0] > 0) {
+                    out.println("PID " + pcb.pid + " (" + pcb.programName + "):");
+                    pcb.cacheStats.print(out, "  ");
+                }
+                total.add(pcb.cacheStats);
+            }
+            out.println("Total:");
+            total.print(out, "  ");
         } finally {
             processLock.unlock();
         }
@@ -198,41 +610,75 @@ public class ProcessManager {
 
     // Lista todos os processos no sistema
     public void listProcesses() {
+        listProcesses(System.out);
+    }
+
+    public void listProcesses(PrintStream out) {
         try {
             processLock.lock();
 
-            System.out.println("PID\tEstado\t\tPrograma\tPC");
-            System.out.println("--------------------------------------------");
+            out.println("PID\tEstado\t\tPrograma\tPC\tCiclos");
+            out.println("----------------------------------------------------");
 
             // Processo em execução
             if (runningProcess != null) {
-                System.out.printf("%d\t%s\t%s\t\t%d%n",
+                out.printf("%d\t%s\t%s\t\t%d\t%d%n",
                         runningProcess.pid,
                         runningProcess.state,
                         runningProcess.programName,
-                        runningProcess.pc);
+                        runningProcess.pc,
+                        runningProcess.cyclesUsed());
+            }
+
+            // Convidados executando nos seus nucleos (modo GUEST_THREADS)
+            for (PCB pcb : runningGuests) {
+                out.printf("%d\t%s\t%s\t\t%d\t%d%n",
+                        pcb.pid,
+                        pcb.state,
+                        pcb.programName,
+                        pcb.core.pc,
+                        pcb.cyclesUsed());
             }
 
             // Processos prontos
             for (PCB pcb : readyQueue) {
-                System.out.printf("%d\t%s\t\t%s\t\t%d%n",
+                out.printf("%d\t%s\t\t%s\t\t%d\t%d%n",
                         pcb.pid,
                         pcb.state,
                         pcb.programName,
-                        pcb.pc);
+                        pcb.pc,
+                        pcb.cyclesUsed());
             }
 
             // Processos bloqueados
             for (PCB pcb : blockedQueue) {
-                System.out.printf("%d\t%s\t%s\t\t%d%n",
+                out.printf("%d\t%s\t%s\t\t%d\t%d%n",
                         pcb.pid,
                         pcb.state,
                         pcb.programName,
-                        pcb.pc);
+                        pcb.pc,
+                        pcb.cyclesUsed());
+            }
+
+            // Processos aguardando admissao, por prioridade
+            for (PCBQueue queue : admissionQueues) {
+                for (PCB pcb : queue) {
+                    out.printf("%d\t%s\t\t%s\t\tprio %d%n",
+                            pcb.pid,
+                            pcb.state,
+                            pcb.programName,
+                            pcb.priority);
+                }
             }
 
-            if (runningProcess == null && readyQueue.isEmpty() && blockedQueue.isEmpty()) {
-                System.out.println("Nenhum processo no sistema.");
+            if (processTable.size() == 0) {
+                out.println("Nenhum processo no sistema.");
+            } else {
+                out.println("Total: " + processTable.size()
+                        + " (prontos: " + processTable.count(ProcessState.READY)
+                        + ", executando: " + processTable.count(ProcessState.RUNNING)
+                        + ", bloqueados: " + processTable.count(ProcessState.BLOCKED)
+                        + ", aguardando admissão: " + processTable.count(ProcessState.NEW) + ")");
             }
         } finally {
             processLock.unlock();
@@ -241,70 +687,181 @@ public class ProcessManager {
 
     // Mostra o status da memória
     public void showMemoryStatus() {
+        showMemoryStatus(System.out);
+    }
+
+    public void showMemoryStatus(PrintStream out) {
+        try {
+            processLock.lock();
+
+            int totalPages = memoryManager.frameCount;
+            int usedPages = memoryManager.usedFrames();
+
+            out.println("Total de páginas: " + totalPages);
+            out.println("Páginas em uso: " + usedPages);
+            out.println("Páginas livres: " + (totalPages - usedPages));
+            out.printf("Utilização: %.2f%%%n", ((float)usedPages / totalPages) * 100);
+            out.println("Tamanho de página: " + memoryManager.pageSize
+                    + (memoryManager.getHugePageSize() > 0 ? " (páginas grandes: " + memoryManager.getHugePageSize() + ")" : ""));
+            out.println("Fragmentação interna: " + memoryManager.internalFragmentation() + " palavras");
+            out.println("Residente: " + hw.mem.residentChunks() + " bloco(s) de " + Memory.CHUNK + " palavras de "
+                    + hw.mem.size() + " configuradas");
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Carga para o despachante do cluster: processos com trabalho de CPU (novos, prontos, executando)
+    public int runnableCount() {
+        try {
+            processLock.lock();
+            return processTable.count(ProcessState.NEW) + processTable.count(ProcessState.READY)
+                    + processTable.count(ProcessState.RUNNING);
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    public int processCount() {
+        try {
+            processLock.lock();
+            return processTable.size();
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // palavras em frames livres
+    public int freeWords() {
         try {
             processLock.lock();
+            return memoryManager.freeFrames() * memoryManager.pageSize;
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Compactacao: torna contiguos os frames dos processos prontos. Feita sob processLock, entao o
+    // escalonador nunca despacha um processo no meio da relocacao; quem esta executando
+    // (ou bloqueado com E/S pendente num endereco fisico) nao e movido.
+    public int compactMemory() {
+        try {
+            processLock.lock();
+            String before = memoryManager.fragmentationReport();
+            int scatteredBefore = readyRuns();
+            ArrayList<ArrayList<Page>> movable = new ArrayList<>();
+            for (PCB pcb : readyQueue) {
+                if (pcb.segments.isEmpty()) { // frames compartilhados ficam onde estao para todos
+                    movable.add(pcb.pages);
+                }
+            }
+            int moved = memoryManager.compact(movable);
+            System.out.println("Compactacao: " + moved + " processo(s) relocado(s)");
+            System.out.println("  antes:  " + before + ", trechos dos prontos: " + scatteredBefore);
+            System.out.println("  depois: " + memoryManager.fragmentationReport() + ", trechos dos prontos: " + readyRuns());
+            return moved;
+        } finally {
+            processLock.unlock();
+        }
+    }
 
-            int totalPages = 0;
-            int usedPages = 0;
+    // Uma amostra do working set: colhe os bits de acesso e atualiza os processos
+    public void sampleWorkingSets() {
+        try {
+            processLock.lock();
+            workingSet.sample(processTable.list(ProcessState.READY, ProcessState.RUNNING, ProcessState.BLOCKED));
+        } finally {
+            processLock.unlock();
+        }
+    }
 
-            for (Page page : memoryManager.pageList) {
-                totalPages++;
-                if (page.inUse) usedPages++;
+    public void showWorkingSets(PrintStream out) {
+        try {
+            processLock.lock();
+            out.println(workingSet.samples() + " amostra(s), janela de " + workingSet.getWindow() + " amostra(s)");
+            out.println("PID\tPrograma\tFrames\tWS\tPico\tSujos");
+            for (PCB pcb : processTable.list()) {
+                if (pcb.pages.isEmpty()) {
+                    continue; // ainda na fila de admissao
+                }
+                out.printf("%d\t%s\t\t%d\t%d\t%d\t%d%s%n", pcb.pid, pcb.programName, workingSet.frames(pcb),
+                        pcb.workingSet, pcb.workingSetPeak, pcb.dirtyFrames,
+                        workingSet.oversized(pcb) ? "\t<- ocupa mais de " + WorkingSet.OVERSIZED + "x o working set" : "");
             }
+        } finally {
+            processLock.unlock();
+        }
+    }
 
-            System.out.println("Total de páginas: " + totalPages);
-            System.out.println("Páginas em uso: " + usedPages);
-            System.out.println("Páginas livres: " + (totalPages - usedPages));
-            System.out.printf("Utilização: %.2f%%%n", ((float)usedPages / totalPages) * 100);
+    // Grava o mapa de calor dos frames, com o PID dono de cada um
+    public int exportHeatmap(Path file) throws IOException {
+        try {
+            processLock.lock();
+            int[] owner = new int[memoryManager.frameCount];
+            for (PCB pcb : processTable.list(ProcessState.READY, ProcessState.RUNNING, ProcessState.BLOCKED)) {
+                for (Page pg : pcb.pages) {
+                    for (int a = pg.pageStart; a < pg.pageEnd; a += memoryManager.pageSize) {
+                        owner[a / memoryManager.pageSize] = pcb.pid;
+                    }
+                }
+            }
+            return workingSet.exportHeatmap(file, owner);
         } finally {
             processLock.unlock();
         }
     }
 
+    private int readyRuns() {
+        int runs = 0;
+        for (PCB pcb : readyQueue) {
+            runs += MemoryManager.runs(pcb.pages);
+        }
+        return runs;
+    }
+
     // Mata um processo específico pelo PID
     public boolean killProcess(int pid) {
         try {
             processLock.lock();
 
+            PCB pcb = processTable.get(pid);
+            if (pcb == null) {
+                return false;
+            }
+
             // Verifica se é o processo em execução
-            if (runningProcess != null && runningProcess.pid == pid) {
+            if (pcb == runningProcess && !cpuBusy) {
                 terminateRunningProcess();
+                workAvailable.signal();
                 return true;
             }
 
-            // Verifica na fila de prontos
-            PCB toRemove = null;
-            for (PCB pcb : readyQueue) {
-                if (pcb.pid == pid) {
-                    toRemove = pcb;
-                    break;
-                }
-            }
-
-            if (toRemove != null) {
-                readyQueue.remove(toRemove);
-                freeProcessMemory(toRemove);
-                System.out.println("Processo com PID " + pid + " removido da fila de prontos.");
+            // Processo executando numa CPU: pede a parada; a thread da CPU encerra o processo
+            // e libera a memoria, para nao haver escrita em frames ja devolvidos
+            if (pcb == runningProcess || runningGuests.contains(pcb.node)) {
+                pcb.killed = true;
+                pcb.core.setInterupt(Interrupts.intSTOP);
                 return true;
             }
 
-            // Verifica na fila de bloqueados
-            toRemove = null;
-            for (PCB pcb : blockedQueue) {
-                if (pcb.pid == pid) {
-                    toRemove = pcb;
-                    break;
-                }
+            // Desencadeia direto da fila onde estiver (prontos ou bloqueados)
+            PCBQueue from = pcb.node.owner();
+            if (from != null) {
+                from.remove(pcb.node);
             }
-
-            if (toRemove != null) {
-                blockedQueue.remove(toRemove);
-                freeProcessMemory(toRemove);
+            releaseProcess(pcb);
+            if (pcb.guestThread != null) {
+                LockSupport.unpark(pcb.guestThread); // thread estacionada ve TERMINATED e sai
+            }
+            if (from == blockedQueue) {
                 System.out.println("Processo com PID " + pid + " removido da fila de bloqueados.");
-                return true;
+            } else if (!readyQueue.holds(from)) {
+                System.out.println("Processo com PID " + pid + " removido da fila de admissão.");
+            } else {
+                System.out.println("Processo com PID " + pid + " removido da fila de prontos.");
             }
-
-            return false;
+            workAvailable.signal();
+            return true;
         } finally {
             processLock.unlock();
         }
@@ -312,23 +869,62 @@ public class ProcessManager {
 
     // Libera a memória usada por um processo
     private void freeProcessMemory(PCB process) {
-        for (Page page : process.pages) {
-            page.inUse = false;
+        memoryManager.free(process.pages);
+    }
+
+    // Fim de um processo: devolve memoria e PID e admite quem estava esperando (com processLock)
+    private void releaseProcess(PCB pcb) {
+        if (pcb.waitNode.owner() != null) {
+            pcb.waitNode.owner().remove(pcb.waitNode); // sai da espera de fila de mensagens
+        }
+        while (!pcb.mutexesHeld.isEmpty()) {
+            releaseMutex(pcb.mutexesHeld.get(0)); // mutex de quem morreu passa adiante
         }
+        detachSegments(pcb);
+        finishedCache.add(pcb.cacheStats);
+        pcb.chargeCycles();
+        pcb.group.members--;
+        pcb.group.framesUsed -= pcb.frames;
+        pcb.frames = 0;
+        freeProcessMemory(pcb);
+        pcb.setState(ProcessState.TERMINATED);
+        processTable.remove(pcb.pid);
+        admitJobs();
     }
 
     //get de processo por id
     public PCB getProcess(int pid) {
-        PCB toReturn = null;
-        if (runningProcess != null && runningProcess.pid == pid) {
-            toReturn = runningProcess;
+        try {
+            processLock.lock();
+            return processTable.get(pid);
+        } finally {
+            processLock.unlock();
         }
-        for (PCB pcb : readyQueue) {
-            if (pcb.pid == pid) {
-                toReturn = pcb;
+    }
+
+    // Copia das paginas do processo, tirada com o processLock: compactacao, carga e fim do processo
+    // mexem na lista e nas paginas, entao quem lista sem o lock (dump) usa esta foto
+    public ArrayList<Page> pagesOf(PCB pcb) {
+        try {
+            processLock.lock();
+            ArrayList<Page> copy = new ArrayList<>(pcb.pages.size());
+            for (Page pg : pcb.pages) {
+                Page c = new Page(pg.pageStart, pg.pageEnd, pg.size, pg.inUse);
+                c.used = pg.used;
+                c.kind = pg.kind;
+                copy.add(c);
             }
+            return copy;
+        } finally {
+            processLock.unlock();
         }
-        return toReturn;
+    }
+
+    // Processo dono da CPU que esta chamando: o convidado desta thread no modo GUEST_THREADS,
+    // ou o processo em execucao na CPU unica
+    private PCB currentProcess() {
+        PCB guest = currentGuest.get();
+        return guest != null ? guest : runningProcess;
     }
 
     // Handle process termination
@@ -336,13 +932,708 @@ public class ProcessManager {
         try {
             processLock.lock();
 
-            if (runningProcess != null) {
-                System.out.println("Process PID: " + runningProcess.pid + " terminated");
+            PCB current = currentProcess();
+            if (current != null) {
+                current.chargeCycles();
+                System.out.println("Process PID: " + current.pid + " terminated (" + current.cycles + " ciclos)");
 
+                if (current.node.owner() != null) {
+                    current.node.owner().remove(current.node);
+                }
+                if (current == runningProcess) {
+                    runningProcess = null;
+                }
                 // Free memory
-                freeProcessMemory(runningProcess);
+                releaseProcess(current);
+            }
+        } finally {
+            processLock.unlock();
+        }
+    }
 
-                runningProcess = null;
+    // intSTOP: encerra o processo da CPU que chamou, se o kill foi mesmo para ele
+    public void terminateKilledProcess() {
+        try {
+            processLock.lock();
+            PCB current = currentProcess();
+            if (current != null && current.killed) {
+                terminateRunningProcess();
+            }
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // intQuota: o processo da CPU que chamou estourou o orcamento de ciclos do grupo. Termina o
+    // processo, ou suspende por throttleMs com um orcamento novo. Retorna true se ele sai da CPU.
+    public boolean quotaExceeded(CPU core) {
+        PCB parked;
+        try {
+            processLock.lock();
+            PCB pcb = currentProcess();
+            if (pcb == null) {
+                return true;
+            }
+            ProcessGroup group = pcb.group;
+            long used = pcb.cyclesUsed() - pcb.budgetBase;
+            if (group.cycleBudget <= 0 || used < group.cycleBudget) {
+                pcb.core.armBudget(group.cycleBudget > 0 ? group.cycleBudget - used : Long.MAX_VALUE); // cota mudou
+                return false;
+            }
+            if (group.throttleMs <= 0) {
+                group.killed++;
+                System.out.println("Processo " + pcb.pid + " excedeu " + group.cycleBudget + " ciclos do grupo "
+                        + group.name + ": terminado");
+                terminateRunningProcess();
+                return true;
+            }
+            group.throttled++;
+            pcb.throttled = true;
+            parked = block(pcb, core, -1);
+            pcb.budgetBase = pcb.cycles; // block ja contabilizou os ciclos
+            System.out.println("Processo " + pcb.pid + " excedeu " + group.cycleBudget + " ciclos do grupo "
+                    + group.name + ": suspenso por " + group.throttleMs + " ms");
+            if (throttleTimer == null) {
+                throttleTimer = new java.util.Timer("Quota-Timer", true);
+            }
+            throttleTimer.schedule(new java.util.TimerTask() {
+                @Override
+                public void run() {
+                    endThrottle(pcb);
+                }
+            }, group.throttleMs);
+        } finally {
+            processLock.unlock();
+        }
+        if (parked == null) {
+            return true; // CPU unica: sai dela, o escalonador segue com o proximo
+        }
+        parkGuest(parked, core); // nucleo proprio: volta daqui quando a pausa acabar
+        parked.armBudget();
+        return false;
+    }
+
+    private void endThrottle(PCB pcb) {
+        try {
+            processLock.lock();
+            if (pcb.throttled && pcb.state == ProcessState.BLOCKED && pcb.node.owner() == blockedQueue) {
+                pcb.throttled = false;
+                wakeUp(pcb);
+            }
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    private ProcessGroup getDefaultGroup() {
+        try {
+            processLock.lock();
+            return groups.get(DEFAULT_GROUP);
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Cria ou altera um grupo; valores negativos mantem o atual
+    public ProcessGroup configureGroup(String name, int weight, int maxFrames, long cycleBudget, long throttleMs) {
+        try {
+            processLock.lock();
+            ProcessGroup group = groups.computeIfAbsent(name, ProcessGroup::new);
+            if (weight > 0) {
+                group.weight = weight;
+            }
+            if (maxFrames >= 0) {
+                group.maxFrames = maxFrames;
+            }
+            if (cycleBudget >= 0) {
+                group.cycleBudget = cycleBudget;
+            }
+            if (throttleMs >= 0) {
+                group.throttleMs = throttleMs;
+            }
+            admitJobs(); // limite de frames pode ter subido
+            return group;
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    public void showGroups(PrintStream out) {
+        try {
+            processLock.lock();
+            long total = 0;
+            for (ProcessGroup g : groups.values()) {
+                total += g.cycles;
+            }
+            for (ProcessGroup g : groups.values()) {
+                out.printf("%s (%.1f%% da CPU)%n", g.describe(), total == 0 ? 0.0 : 100.0 * g.cycles / total);
+            }
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Syscall de leitura: bloqueia o processo corrente ate o console entregar o valor (deliverInput)
+    public void blockForInput(CPU core, int physAddr) {
+        PCB parked;
+        try {
+            processLock.lock();
+            PCB pcb = currentProcess();
+            if (pcb == null) {
+                return;
+            }
+            parked = block(pcb, core, physAddr);
+            System.out.println("Processo " + pcb.pid + " bloqueado aguardando entrada (in " + pcb.pid + " <valor>)");
+        } finally {
+            processLock.unlock();
+        }
+        if (parked != null) {
+            parkGuest(parked, core);
+        }
+    }
+
+    // Poe o processo corrente em BLOCKED (com processLock). No modo SCHEDULER tira o processo da
+    // CPU unica e retorna null; no GUEST_THREADS retorna o PCB, que quem chamou deve estacionar
+    // com parkGuest depois de soltar o lock.
+    private PCB block(PCB pcb, CPU core, int physAddr) {
+        pcb.ioAddr = physAddr;
+        pcb.saveContext();
+        pcb.setState(ProcessState.BLOCKED);
+        blockedQueue.add(pcb.node);
+        if (mode == ExecutionMode.SCHEDULER) {
+            // sai da CPU unica; o escalonador segue com o proximo pronto
+            runningProcess = null;
+            core.stop();
+            return null;
+        }
+        // GUEST_THREADS: devolve o carrier e estaciona a thread ate ser acordada
+        return pcb;
+    }
+
+    // Console entrega o valor lido para um processo bloqueado em leitura e o acorda
+    public boolean deliverInput(int pid, int value) {
+        try {
+            processLock.lock();
+            PCB pcb = processTable.get(pid);
+            if (pcb == null || pcb.state != ProcessState.BLOCKED || pcb.ioAddr < 0 || pcb.waitNode.owner() != null) {
+                return false;
+            }
+            hw.mem.set(pcb.ioAddr, Opcode.DATA, -1, -1, value);
+            pcb.ioAddr = -1;
+            wakeUp(pcb);
+            if (mode == ExecutionMode.SCHEDULER) {
+                cpu.setInterupt(Interrupts.intIO); // sinaliza a conclusao da E/S para a CPU
+            }
+            return true;
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Tira um processo de BLOCKED e o devolve aos prontos (chamado com processLock)
+    private void wakeUp(PCB pcb) {
+        blockedQueue.remove(pcb.node);
+        makeReady(pcb);
+        if (pcb.guestThread != null) {
+            LockSupport.unpark(pcb.guestThread);
+        }
+    }
+
+    // ---------------- IPC e sincronizacao: memoria compartilhada, mensagens, semaforos e mutexes ----------------
+
+    // Anexa o segmento 'key' (criado no primeiro uso) ao fim da tabela de paginas do processo
+    // corrente. Retorna o endereco logico do segmento, ou -1 sem memoria.
+    public int attachShared(int key) {
+        try {
+            processLock.lock();
+            PCB pcb = currentProcess();
+            if (pcb == null) {
+                return -1;
+            }
+            SharedSegment seg = sharedSegments.get(key);
+            if (seg != null && pcb.segments.contains(seg)) {
+                return logicalBase(pcb.pages, pcb.pages.indexOf(seg.frames.get(0))); // ja anexado
+            }
+            if (seg == null) {
+                ArrayList<Page> frames = memoryManager.allocFrames(SharedSegment.WORDS);
+                if (frames.isEmpty()) {
+                    System.out.println("Sem frames para o segmento compartilhado " + key);
+                    return -1;
+                }
+                seg = new SharedSegment(key, frames);
+                sharedSegments.put(key, seg);
+            }
+            // a tabela e a mesma lista que a CPU enxerga: a traducao ja ve as paginas novas
+            int base = logicalBase(pcb.pages, pcb.pages.size());
+            pcb.pages.addAll(seg.frames);
+            pcb.segments.add(seg);
+            seg.attached++;
+            System.out.println("Processo " + pcb.pid + " anexou o segmento " + key + " em " + base);
+            return base;
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // endereco logico da pagina 'index' da tabela (paginas grandes primeiro, depois as de tamanho base)
+    private static int logicalBase(ArrayList<Page> pages, int index) {
+        int base = 0;
+        for (int i = 0; i < index; i++) {
+            base += pages.get(i).size;
+        }
+        return base;
+    }
+
+    // Tira os segmentos da tabela do processo que termina; o ultimo a sair devolve os frames
+    private void detachSegments(PCB pcb) {
+        for (SharedSegment seg : pcb.segments) {
+            pcb.pages.removeAll(seg.frames);
+            if (--seg.attached == 0) {
+                memoryManager.free(seg.frames);
+                sharedSegments.remove(seg.key);
+            }
+        }
+        pcb.segments.clear();
+    }
+
+    private MessageQueue messageQueue(int key) {
+        MessageQueue q = messageQueues.get(key);
+        if (q == null) {
+            q = new MessageQueue(key);
+            messageQueues.put(key, q);
+        }
+        return q;
+    }
+
+    // Envia 'value' para a fila 'key': entrega direto a um receptor que ja espera, ou enfileira;
+    // com a fila cheia o remetente bloqueia ate um receptor abrir espaco.
+    public void sendMessage(CPU core, int key, int value) {
+        PCB parked = null;
+        try {
+            processLock.lock();
+            PCB pcb = currentProcess();
+            if (pcb == null) {
+                return;
+            }
+            MessageQueue q = messageQueue(key);
+            long now = System.nanoTime();
+            PCB receiver = q.receivers.poll();
+            if (receiver != null) {
+                hw.mem.set(receiver.ioAddr, Opcode.DATA, -1, -1, value);
+                receiver.ioAddr = -1;
+                receiver.handoffAt = now; // latencia fecha quando o receptor voltar a executar
+                receiver.handoffLatency = messageLatency;
+                q.sent++;
+                q.received++;
+                wakeUp(receiver);
+            } else if (!q.isFull()) {
+                q.offer(value, now);
+                q.sent++;
+            } else {
+                pcb.msgValue = value;
+                pcb.msgSentAt = now;
+                q.senders.add(pcb.waitNode);
+                parked = block(pcb, core, -1);
+                System.out.println("Processo " + pcb.pid + " bloqueado: fila de mensagens " + key + " cheia");
+            }
+        } finally {
+            processLock.unlock();
+        }
+        if (parked != null) {
+            parkGuest(parked, core);
+        }
+    }
+
+    // Recebe da fila 'key' para o endereco fisico dado; com a fila vazia bloqueia ate um envio.
+    public void receiveMessage(CPU core, int key, int physAddr) {
+        PCB parked = null;
+        try {
+            processLock.lock();
+            PCB pcb = currentProcess();
+            if (pcb == null) {
+                return;
+            }
+            MessageQueue q = messageQueue(key);
+            if (!q.isEmpty()) {
+                messageLatency.record(System.nanoTime() - q.headSentAt());
+                hw.mem.set(physAddr, Opcode.DATA, -1, -1, q.poll());
+                q.received++;
+                PCB sender = q.senders.poll();
+                if (sender != null) {
+                    // abriu espaco: a mensagem do remetente bloqueado entra e ele segue
+                    q.offer(sender.msgValue, sender.msgSentAt);
+                    q.sent++;
+                    wakeUp(sender);
+                }
+            } else {
+                q.receivers.add(pcb.waitNode);
+                parked = block(pcb, core, physAddr);
+                System.out.println("Processo " + pcb.pid + " bloqueado: esperando mensagem na fila " + key);
+            }
+        } finally {
+            processLock.unlock();
+        }
+        if (parked != null) {
+            parkGuest(parked, core);
+        }
+    }
+
+    // mensagem, permissao ou mutex entregue direto a um processo bloqueado: a latencia vai ate ele voltar a CPU
+    private void recordHandoff(PCB pcb) {
+        if (pcb.handoffAt != 0) {
+            pcb.handoffLatency.record(System.nanoTime() - pcb.handoffAt);
+            pcb.handoffAt = 0;
+        }
+    }
+
+    // Acorda o primeiro da fila de espera de 'obj' entregando-lhe a permissao/o mutex (com processLock)
+    private PCB handOff(SyncObject obj) {
+        PCB next = obj.waiters.poll();
+        if (next != null) {
+            obj.handoffs++;
+            next.handoffAt = System.nanoTime();
+            next.handoffLatency = syncLatency;
+            wakeUp(next);
+        }
+        return next;
+    }
+
+    private SyncObject syncObject(HashMap<Integer, SyncObject> table, int key, boolean mutex) {
+        SyncObject obj = table.get(key);
+        if (obj == null) {
+            obj = new SyncObject(key, mutex);
+            table.put(key, obj);
+        }
+        return obj;
+    }
+
+    // Inicia (ou reinicia, se ninguem espera) o semaforo 'key' com 'value' permissoes
+    public void semInit(int key, int value) {
+        try {
+            processLock.lock();
+            SyncObject sem = syncObject(semaphores, key, false);
+            if (!sem.waiters.isEmpty()) {
+                System.out.println("Semaforo " + key + " tem processos esperando, nao reiniciado");
+                return;
+            }
+            sem.value = Math.max(0, value);
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // P: consome uma permissao ou bloqueia na fila do semaforo
+    public void semWait(CPU core, int key) {
+        PCB parked = null;
+        try {
+            processLock.lock();
+            PCB pcb = currentProcess();
+            if (pcb == null) {
+                return;
+            }
+            SyncObject sem = syncObject(semaphores, key, false);
+            if (sem.value > 0) {
+                sem.value--;
+            } else {
+                sem.waiters.add(pcb.waitNode);
+                parked = block(pcb, core, -1);
+                System.out.println("Processo " + pcb.pid + " bloqueado no semaforo " + key);
+            }
+        } finally {
+            processLock.unlock();
+        }
+        if (parked != null) {
+            parkGuest(parked, core);
+        }
+    }
+
+    // V: passa a permissao direto ao primeiro que espera, ou devolve ao contador
+    public void semSignal(int key) {
+        try {
+            processLock.lock();
+            SyncObject sem = syncObject(semaphores, key, false);
+            if (handOff(sem) == null) {
+                sem.value++;
+            }
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Trava o mutex 'key'; ocupado por outro processo, bloqueia ate ser passado a este
+    public void mutexLock(CPU core, int key) {
+        PCB parked = null;
+        try {
+            processLock.lock();
+            PCB pcb = currentProcess();
+            if (pcb == null) {
+                return;
+            }
+            SyncObject mtx = syncObject(mutexes, key, true);
+            if (mtx.owner == null) {
+                mtx.owner = pcb;
+                pcb.mutexesHeld.add(mtx);
+            } else if (mtx.owner == pcb) {
+                System.out.println("Processo " + pcb.pid + " ja detem o mutex " + key);
+            } else {
+                mtx.waiters.add(pcb.waitNode);
+                parked = block(pcb, core, -1);
+                System.out.println("Processo " + pcb.pid + " bloqueado no mutex " + key);
+            }
+        } finally {
+            processLock.unlock();
+        }
+        if (parked != null) {
+            parkGuest(parked, core);
+        }
+    }
+
+    // Destrava o mutex 'key' (so o dono); o primeiro da fila vira o novo dono
+    public void mutexUnlock(int key) {
+        try {
+            processLock.lock();
+            PCB pcb = currentProcess();
+            SyncObject mtx = mutexes.get(key);
+            if (pcb == null || mtx == null || mtx.owner != pcb) {
+                System.out.println("Unlock do mutex " + key + " por quem nao o detem");
+                return;
+            }
+            releaseMutex(mtx);
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    private void releaseMutex(SyncObject mtx) {
+        mtx.owner.mutexesHeld.remove(mtx);
+        PCB next = handOff(mtx);
+        mtx.owner = next;
+        if (next != null) {
+            next.mutexesHeld.add(mtx);
+        }
+    }
+
+    // Lista segmentos compartilhados, filas de mensagens, semaforos e mutexes
+    public void showIpc() {
+        showIpc(System.out);
+    }
+
+    public void showIpc(PrintStream out) {
+        try {
+            processLock.lock();
+            out.println("Segmentos compartilhados: " + sharedSegments.size());
+            for (SharedSegment seg : sharedSegments.values()) {
+                out.println("  chave " + seg.key + ": " + seg.words() + " palavras, frames a partir de "
+                        + seg.frames.get(0).pageStart + ", " + seg.attached + " processo(s)");
+            }
+            out.println("Filas de mensagens: " + messageQueues.size());
+            for (MessageQueue q : messageQueues.values()) {
+                out.println("  chave " + q.key + ": " + q.size() + "/" + MessageQueue.CAPACITY
+                        + " na fila, enviadas " + q.sent + ", recebidas " + q.received
+                        + ", esperando: " + q.receivers.size() + " receptor(es), " + q.senders.size() + " remetente(s)");
+            }
+            out.println("Semaforos: " + semaphores.size() + ", mutexes: " + mutexes.size());
+            for (SyncObject sem : semaphores.values()) {
+                out.println("  semaforo " + sem.key + ": valor " + sem.value + ", esperando "
+                        + sem.waiters.size() + ", passagens " + sem.handoffs);
+            }
+            for (SyncObject mtx : mutexes.values()) {
+                out.println("  mutex " + mtx.key + ": dono " + (mtx.owner == null ? "-" : "PID " + mtx.owner.pid)
+                        + ", esperando " + mtx.waiters.size() + ", passagens " + mtx.handoffs);
+            }
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // ---------------- migracao entre instancias ----------------
+
+    // Foto do processo (ver ProcessSnapshot) sem tira-lo do sistema; null se ele nao pode ser fotografado
+    public byte[] snapshotProcess(int pid) {
+        try {
+            processLock.lock();
+            PCB pcb = processTable.get(pid);
+            return pcb != null && canSnapshot(pcb) ? snapshot(pcb).encode() : null;
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Tira o processo deste sistema e devolve a sua foto, para importProcess em outra instancia.
+    // So processos prontos ou aguardando admissao, sem memoria compartilhada nem mutex: o estado deles
+    // esta todo no PCB e nas paginas. Retorna null se o processo nao existe ou nao pode migrar.
+    public byte[] exportProcess(int pid) {
+        try {
+            processLock.lock();
+            PCB pcb = processTable.get(pid);
+            if (pcb == null || !canSnapshot(pcb)) {
+                return null;
+            }
+            byte[] blob = snapshot(pcb).encode();
+            detachExported(pcb);
+            System.out.println("Processo " + pid + " exportado (" + blob.length + " bytes)");
+            return blob;
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Tira daqui o processo ja fotografado (com processLock)
+    private void detachExported(PCB pcb) {
+        pcb.node.owner().remove(pcb.node);
+        releaseProcess(pcb);
+        if (pcb.guestThread != null) {
+            LockSupport.unpark(pcb.guestThread); // thread esperando carrier ve TERMINATED e sai
+        }
+    }
+
+    // Admite a foto como um processo novo desta instancia (novo PID, novas paginas), continuando do pc salvo
+    public PCB importProcess(byte[] blob) throws java.io.IOException {
+        ProcessSnapshot snap = ProcessSnapshot.decode(blob);
+        PCB pcb = createProcess(new Program(snap.programName, snap.image), snap.priority, snap.pc, snap.registers,
+                getDefaultGroup());
+        if (pcb != null) {
+            System.out.println("Processo importado: " + snap.programName + " com PID " + pcb.pid + ", pc " + snap.pc);
+        }
+        return pcb;
+    }
+
+    // Migracao dentro da mesma JVM: o processo so sai daqui depois que 'target' o aceita. Os dois
+    // processLock ficam seguros durante a troca, entao ele nao roda entre a foto e a saida e, se o
+    // destino recusar, continua aqui como estava. Os locks sao tomados sempre na mesma ordem, para
+    // duas migracoes em sentidos opostos nao travarem. Retorna o PCB no destino, ou null se nao migrou.
+    public PCB migrateTo(int pid, ProcessManager target) {
+        int a = System.identityHashCode(this);
+        int b = System.identityHashCode(target);
+        if (a == b && target != this) {
+            synchronized (ProcessManager.class) { // empate de hash: a ordem entre os dois fica sob este lock
+                return migrateLocked(pid, target, processLock, target.processLock);
+            }
+        }
+        return a <= b ? migrateLocked(pid, target, processLock, target.processLock)
+                : migrateLocked(pid, target, target.processLock, processLock);
+    }
+
+    private PCB migrateLocked(int pid, ProcessManager target, Lock first, Lock second) {
+        first.lock();
+        second.lock();
+        try {
+            PCB pcb = processTable.get(pid);
+            if (pcb == null || !canSnapshot(pcb)) {
+                return null;
+            }
+            byte[] blob = snapshot(pcb).encode();
+            PCB moved = target.importProcess(blob);
+            if (moved == null) {
+                System.out.println("Destino recusou o processo " + pid + ": ele continua nesta instancia");
+                return null;
+            }
+            detachExported(pcb);
+            System.out.println("Processo " + pid + " migrado como PID " + moved.pid);
+            return moved;
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // foto recem-gerada sempre e valida
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+    }
+
+    private boolean canSnapshot(PCB pcb) {
+        if (pcb.state != ProcessState.READY && pcb.state != ProcessState.NEW) {
+            System.out.println("Processo " + pcb.pid + " esta " + pcb.state + ": so processos prontos ou aguardando admissão migram");
+            return false;
+        }
+        if (!pcb.segments.isEmpty() || !pcb.mutexesHeld.isEmpty()) {
+            System.out.println("Processo " + pcb.pid + " usa memória compartilhada ou mutex e não pode migrar");
+            return false;
+        }
+        return true;
+    }
+
+    // com processLock; NEW ainda nao tem paginas: a foto leva a imagem do programa
+    private ProcessSnapshot snapshot(PCB pcb) {
+        Word[] image;
+        if (pcb.state == ProcessState.NEW) {
+            image = pcb.program.image;
+        } else {
+            image = new Word[logicalBase(pcb.pages, pcb.pages.size())];
+            int i = 0;
+            for (Page pg : pcb.pages) {
+                for (int a = pg.pageStart; a < pg.pageEnd; a++) {
+                    image[i++] = hw.mem.get(a);
+                }
+            }
+        }
+        return new ProcessSnapshot(pcb.programName, pcb.priority, pcb.pc, pcb.registers.clone(), image);
+    }
+
+    // ---------------- modo GUEST_THREADS ----------------
+
+    private void startGuest(PCB pcb) {
+        pcb.core = cpu.newCore(false); // sem debug: milhares de convidados imprimindo cada instrucao nao ajuda
+        pcb.core.getInterruptController().mask(Interrupts.intTimer); // sem preempcao: cada um tem sua thread
+        pcb.loadContext(); // pc e registradores: zerados, ou os de uma foto importada
+        pcb.guestThread = guestExecutor.start(() -> runGuest(pcb));
+    }
+
+    private void runGuest(PCB pcb) {
+        currentGuest.set(pcb);
+        try {
+            if (!acquireCarrier(pcb)) {
+                return; // morto antes de executar
+            }
+            try {
+                pcb.core.run();
+            } finally {
+                guestExecutor.releaseCarrier();
+            }
+            finishGuest(pcb);
+        } finally {
+            currentGuest.remove();
+        }
+    }
+
+    // Espera um carrier livre e passa o convidado para RUNNING; false se foi morto enquanto esperava
+    private boolean acquireCarrier(PCB pcb) {
+        guestExecutor.acquireCarrier();
+        try {
+            processLock.lock();
+            if (pcb.state == ProcessState.TERMINATED) {
+                guestExecutor.releaseCarrier();
+                return false;
+            }
+            runningGuests.add(pcb.node);
+            pcb.setState(ProcessState.RUNNING);
+            recordHandoff(pcb);
+            return true;
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    // Convidado bloqueado: libera o carrier e estaciona a thread (virtual) ate wakeUp ou kill
+    private void parkGuest(PCB pcb, CPU core) {
+        guestExecutor.releaseCarrier();
+        while (pcb.state == ProcessState.BLOCKED) {
+            LockSupport.park(this);
+        }
+        if (!acquireCarrier(pcb)) {
+            // morto enquanto bloqueado; runGuest devolve o carrier ao sair da CPU
+            guestExecutor.acquireCarrier();
+            core.stop();
+        }
+    }
+
+    // A CPU do convidado parou. STOP ja terminou o processo; kill ou interrupcao terminam aqui.
+    private void finishGuest(PCB pcb) {
+        try {
+            processLock.lock();
+            if (processTable.get(pcb.pid) == pcb) {
+                pcb.chargeCycles();
+                System.out.println("Process PID: " + pcb.pid + " terminated (" + pcb.state + ", " + pcb.cycles + " ciclos)");
+                runningGuests.remove(pcb.node);
+                releaseProcess(pcb);
             }
         } finally {
             processLock.unlock();
@@ -353,7 +1644,7 @@ public class ProcessManager {
     public boolean hasActiveProcesses() {
         try {
             processLock.lock();
-            return runningProcess != null || !readyQueue.isEmpty() || !blockedQueue.isEmpty();
+            return processTable.size() > 0;
         } finally {
             processLock.unlock();
         }
@@ -0,0 +1,100 @@
+package Software;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import Hardware.*;
+
+// Foto de um processo para migracao entre instancias do Sistema: nome, prioridade, pc,
+// registradores e a memoria logica residente (paginas na ordem logica, sem as celulas ___ do fim).
+// Formato binario: "SOPS", versao, cabecalho e 7 bytes por palavra (opcode, ra, rb, p).
+public class ProcessSnapshot {
+    private static final int MAGIC = 0x534F5053; // "SOPS"
+    private static final int VERSION = 1;
+    private static final Opcode[] OPCODES = Opcode.values();
+
+    public final String programName;
+    public final int priority;
+    public final int pc;
+    public final int[] registers;
+    public final Word[] image; // memoria logica a partir do endereco 0
+
+    public ProcessSnapshot(String programName, int priority, int pc, int[] registers, Word[] image) {
+        this.programName = programName;
+        this.priority = priority;
+        this.pc = pc;
+        this.registers = registers;
+        this.image = image;
+    }
+
+    public byte[] encode() {
+        int words = image.length;
+        while (words > 0 && (image[words - 1] == null || image[words - 1].opc == Opcode.___)) {
+            words--;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + words * 7);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(programName);
+            out.writeByte(priority);
+            out.writeInt(pc);
+            out.writeByte(registers.length);
+            for (int r : registers) {
+                out.writeInt(r);
+            }
+            out.writeInt(words);
+            for (int i = 0; i < words; i++) {
+                Word w = image[i];
+                if (w == null) {
+                    out.writeByte(Opcode.___.ordinal());
+                    out.writeByte(-1);
+                    out.writeByte(-1);
+                    out.writeInt(-1);
+                } else {
+                    out.writeByte(w.opc.ordinal());
+                    out.writeByte(w.ra);  // ra/rb sao registradores (0..9) ou -1: cabem num byte
+                    out.writeByte(w.rb);
+                    out.writeInt(w.p);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // ByteArrayOutputStream nao falha
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ProcessSnapshot decode(byte[] blob) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(blob));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Nao e uma foto de processo");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Versao de foto nao suportada: " + version);
+        }
+        String name = in.readUTF();
+        int priority = in.readByte();
+        int pc = in.readInt();
+        int[] registers = new int[in.readUnsignedByte()];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = in.readInt();
+        }
+        int words = in.readInt();
+        if (words < 0 || words > blob.length / 7) {
+            throw new IOException("Foto corrompida: " + words + " palavras");
+        }
+        Word[] image = new Word[words];
+        for (int i = 0; i < words; i++) {
+            int opc = in.readUnsignedByte();
+            if (opc >= OPCODES.length) {
+                throw new IOException("Foto corrompida: opcode " + opc);
+            }
+            image[i] = new Word(OPCODES[opc], in.readByte(), in.readByte(), in.readInt());
+        }
+        return new ProcessSnapshot(name, priority, pc, registers, image);
+    }
+}
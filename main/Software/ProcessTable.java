@@ -0,0 +1,100 @@
+package Software;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+import Software.ProcessManager.PCB;
+import Software.ProcessManager.ProcessState;
+
+// Tabela de processos indexada por PID (array de PCBs), com uma fila intrusiva por estado
+// (PCB.stateNode). Busca, insercao, remocao e troca de estado sao O(1), e contar ou listar os
+// processos de um estado percorre so eles, sem varrer a tabela; os PIDs sao reciclados pelo PidAllocator.
+public class ProcessTable {
+    private PCB[] table = new PCB[64];
+    private final PCBQueue[] byState = new PCBQueue[ProcessState.values().length];
+    private final PidAllocator pids = new PidAllocator();
+    private int size = 0;
+
+    public ProcessTable() {
+        for (int i = 0; i < byState.length; i++) {
+            byState[i] = new PCBQueue();
+        }
+    }
+
+    public int allocatePid() {
+        return pids.allocate();
+    }
+
+    public void put(PCB pcb) {
+        if (pcb.pid >= table.length) {
+            int newLength = table.length;
+            while (newLength <= pcb.pid) {
+                newLength *= 2;
+            }
+            PCB[] bigger = new PCB[newLength];
+            System.arraycopy(table, 0, bigger, 0, table.length);
+            table = bigger;
+        }
+        table[pcb.pid] = pcb;
+        byState[pcb.state.ordinal()].add(pcb.stateNode);
+        size++;
+    }
+
+    public PCB get(int pid) {
+        if (pid <= 0 || pid >= table.length) {
+            return null;
+        }
+        return table[pid];
+    }
+
+    // Retira o processo da tabela e devolve seu PID para reuso
+    public PCB remove(int pid) {
+        PCB pcb = get(pid);
+        if (pcb == null) {
+            return null;
+        }
+        table[pid] = null;
+        byState[pcb.state.ordinal()].remove(pcb.stateNode);
+        size--;
+        pids.release(pid);
+        return pcb;
+    }
+
+    // Toda troca de estado de um PCB registrado passa por aqui para mante-lo na fila do estado
+    public void changeState(PCB pcb, ProcessState newState) {
+        if (get(pcb.pid) == pcb) {
+            byState[newState.ordinal()].add(pcb.stateNode); // add tira da fila do estado anterior
+        }
+        pcb.state = newState;
+    }
+
+    public int count(ProcessState state) {
+        return byState[state.ordinal()].size();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // PCBs registrados, em ordem de PID
+    public ArrayList<PCB> list() {
+        ArrayList<PCB> all = list(ProcessState.values());
+        all.sort(Comparator.comparingInt(pcb -> pcb.pid));
+        return all;
+    }
+
+    // PCBs nos estados dados, estado a estado, na ordem em que entraram em cada um
+    public ArrayList<PCB> list(ProcessState... states) {
+        int n = 0;
+        for (ProcessState st : states) {
+            n += count(st);
+        }
+        ArrayList<PCB> found = new ArrayList<>(n);
+        for (ProcessState st : states) {
+            for (PCB pcb : byState[st.ordinal()]) {
+                found.add(pcb);
+            }
+        }
+        return found;
+    }
+}
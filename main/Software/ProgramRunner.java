@@ -0,0 +1,135 @@
+package Software;
+
+import java.util.ArrayList;
+
+import Hardware.*;
+import Programs.Program;
+
+// Execucao isolada de um programa ate o fim, sem console, escalonador nem ProcessManager: uma CPU
+// e uma memoria proprias, entradas dadas de antemao e saidas coletadas numa lista. Cada instancia
+// e de uma thread so (o BatchRunner guarda uma por thread) e e reaproveitada entre execucoes.
+// Syscalls suportadas: 1 leitura (proxima entrada) e 2 escrita; as de IPC encerram a execucao.
+public class ProgramRunner {
+    public static final long DEFAULT_MAX_CYCLES = 10_000_000; // protege contra lacos infinitos
+
+    // Resultado de uma execucao
+    public static class Result {
+        public final String program;
+        public final int[] inputs;
+        public final ArrayList<Integer> outputs = new ArrayList<>();
+        public long instructions;
+        public long cycles;
+        public String error; // null = terminou em STOP
+
+        Result(String program, int[] inputs) {
+            this.program = program;
+            this.inputs = inputs;
+        }
+
+        public boolean ok() {
+            return error == null;
+        }
+    }
+
+    private final HW hw;
+    private final MemoryManager memoryManager;
+    private Result current;
+    private int nextInput;
+
+    public ProgramRunner(int memWords, int pageSize) {
+        hw = new HW(memWords);
+        hw.cpu.setDebug(false);
+        hw.cpu.setPageSize(pageSize);
+        hw.cpu.setAddressOfHandlers(new RunnerInterrupts(hw), new RunnerSysCalls(hw));
+        memoryManager = new MemoryManager(hw.mem, pageSize);
+    }
+
+    public Result run(Program program, int[] inputs) {
+        return run(program, inputs, DEFAULT_MAX_CYCLES);
+    }
+
+    // Executa ate STOP, falta ou 'maxCycles' ciclos simulados
+    public Result run(Program program, int[] inputs, long maxCycles) {
+        current = new Result(program.name, inputs);
+        nextInput = 0;
+        ArrayList<Page> pages = memoryManager.alloc(program.image);
+        if (pages.isEmpty()) {
+            current.error = "nao cabe na memoria";
+            return current;
+        }
+        CPU cpu = hw.cpu;
+        long i0 = cpu.instructions;
+        long c0 = cpu.cycles;
+        try {
+            for (int r = 0; r < cpu.reg.length; r++) {
+                cpu.reg[r] = 0;
+            }
+            cpu.setContext(pages, 0);
+            cpu.armQuantum(maxCycles);
+            cpu.run();
+        } finally {
+            cpu.armQuantum(0);
+            current.instructions = cpu.instructions - i0;
+            current.cycles = cpu.cycles - c0;
+            memoryManager.free(pages); // free esvazia os frames: a proxima execucao nao ve restos desta
+        }
+        Result r = current;
+        current = null;
+        return r;
+    }
+
+    private class RunnerSysCalls extends SysCallHandling {
+        RunnerSysCalls(HW hw) {
+            super(hw);
+        }
+
+        @Override
+        public void stop(CPU cpu) {
+            // fim normal: a CPU para sozinha depois do STOP
+        }
+
+        @Override
+        public void handle(CPU cpu) {
+            if (cpu.reg[8] == 1 || cpu.reg[8] == 2) {
+                int addr = cpu.getMemAddr(cpu.reg[9]);
+                if (addr < 0) {
+                    return; // intEnderecoInvalido ja levantada
+                }
+                if (cpu.reg[8] == 2) {
+                    current.outputs.add(hw.mem.p(addr));
+                } else if (nextInput < current.inputs.length) {
+                    hw.mem.set(addr, Opcode.DATA, -1, -1, current.inputs[nextInput++]);
+                } else {
+                    current.error = "leitura sem entrada disponivel";
+                    cpu.stop();
+                }
+            } else {
+                current.error = "syscall " + cpu.reg[8] + " nao suportada em execucao isolada";
+                cpu.stop();
+            }
+        }
+    }
+
+    private class RunnerInterrupts extends InterruptHandling {
+        RunnerInterrupts(HW hw) {
+            super(hw);
+        }
+
+        @Override
+        public boolean handle(CPU cpu, int pending) {
+            boolean stop = false;
+            while (pending != 0) {
+                Interrupts irpt = InterruptController.highest(pending);
+                pending &= ~irpt.bit();
+                if (irpt.isFault()) {
+                    current.error = irpt + " em pc " + cpu.pc;
+                    stop = true;
+                } else if (irpt == Interrupts.intTimer) {
+                    current.error = "limite de ciclos excedido";
+                    stop = true;
+                }
+            }
+            return stop;
+        }
+    }
+}
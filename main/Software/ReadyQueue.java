@@ -0,0 +1,110 @@
+package Software;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+import Software.ProcessManager.PCB;
+
+// Fila de prontos com divisao justa entre grupos: cada grupo tem sua PCBQueue (round robin entre os
+// membros) e os grupos com alguem pronto ficam num TreeSet ordenado pelo tempo virtual, entao o
+// proximo e o primeiro do grupo de menor vruntime, em O(log grupos) e sem varrer os prontos. Com um
+// grupo so e a fila round robin de sempre. A fila do grupo entra e sai do conjunto sozinha quando deixa
+// de estar ou fica vazia, entao node.owner().remove(...) continua valendo. O tempo virtual de um grupo
+// com prontos so muda por charge(), que o reposiciona. Usada com o processLock do ProcessManager.
+public class ReadyQueue implements Iterable<PCB> {
+
+    // fila de prontos de um grupo (ProcessGroup.ready)
+    private final class GroupQueue extends PCBQueue {
+        final ProcessGroup group;
+
+        GroupQueue(ProcessGroup group) {
+            this.group = group;
+        }
+
+        @Override
+        public void add(Node n) {
+            super.add(n);
+            size++;
+            if (size() == 1) {
+                active.add(group);
+            }
+        }
+
+        @Override
+        public boolean remove(Node n) {
+            if (!super.remove(n)) {
+                return false;
+            }
+            size--;
+            if (isEmpty()) {
+                active.remove(group);
+            }
+            return true;
+        }
+    }
+
+    private final TreeSet<ProcessGroup> active = new TreeSet<>(
+            Comparator.comparingLong((ProcessGroup g) -> g.vruntime).thenComparing(g -> g.name));
+    private int size;
+
+    public void add(PCB pcb) {
+        if (pcb.group.ready == null) {
+            pcb.group.ready = new GroupQueue(pcb.group);
+        }
+        pcb.group.ready.add(pcb.node);
+    }
+
+    // primeiro pronto do grupo com menor tempo virtual
+    public PCB poll() {
+        return active.isEmpty() ? null : active.first().ready.poll();
+    }
+
+    // a fila 'q' (dono de um no) e a de prontos de algum grupo?
+    public boolean holds(PCBQueue q) {
+        return q instanceof GroupQueue;
+    }
+
+    // cobra os ciclos do grupo, reposicionando-o no conjunto se tiver prontos
+    void charge(ProcessGroup group, long delta) {
+        boolean queued = active.remove(group);
+        group.charge(delta);
+        if (queued) {
+            active.add(group);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // prontos grupo a grupo, na ordem em que seriam escolhidos os grupos
+    @Override
+    public Iterator<PCB> iterator() {
+        Iterator<ProcessGroup> groups = active.iterator();
+        return new Iterator<PCB>() {
+            private Iterator<PCB> cur = groups.hasNext() ? groups.next().ready.iterator() : null;
+
+            @Override
+            public boolean hasNext() {
+                while (cur != null && !cur.hasNext()) {
+                    cur = groups.hasNext() ? groups.next().ready.iterator() : null;
+                }
+                return cur != null;
+            }
+
+            @Override
+            public PCB next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return cur.next();
+            }
+        };
+    }
+}
@@ -10,10 +10,16 @@ public class SO {
     public ProcessManager processManager;
 
     public SO(HW hw) {
+        this(hw, 8);
+    }
+
+    public SO(HW hw, int pageSize) {
         ih = new InterruptHandling(hw);
         sc = new SysCallHandling(hw);
         hw.cpu.setAddressOfHandlers(ih, sc);
-        memoryManager = new MemoryManager(hw.mem);
+        memoryManager = new MemoryManager(hw.mem, pageSize);
+        hw.cpu.setPageSize(pageSize);
+        hw.cpu.setAccessBits(memoryManager.accessBits);
         utils = new Utilities(memoryManager, hw);
 
         processManager = new ProcessManager(memoryManager, hw);
@@ -5,7 +5,6 @@ import Hardware.*;
 public class SchedulerThread extends Thread {
     private final ProcessManager processManager;
     private volatile boolean running = true;
-    private static final int SCHEDULER_SLEEP_MS = 5; // Tempo de espera entre verificações
 
     public SchedulerThread(ProcessManager processManager) {
         this.processManager = processManager;
@@ -18,12 +17,11 @@ public class SchedulerThread extends Thread {
 
         while (running) {
             try {
-                // Se houver processos para executar, o escalonador os gerencia
-                if (processManager.hasProcessesToSchedule()) {
-                    processManager.schedulerCycle();
-                } else {
-                    Thread.sleep(SCHEDULER_SLEEP_MS);
-                }
+                // Dorme na condicao do ProcessManager ate haver trabalho (criacao, fim de E/S, kill)
+                processManager.awaitWork();
+                processManager.schedulerCycle();
+            } catch (InterruptedException e) {
+                // stopScheduler: sai do laco
             } catch (Exception e) {
                 System.err.println("Erro na thread do escalonador: " + e.getMessage());
                 e.printStackTrace();
@@ -37,4 +35,4 @@ public class SchedulerThread extends Thread {
         this.running = false;
         this.interrupt();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+package Software;
+
+import java.util.ArrayList;
+
+// Segmento de memoria compartilhada identificado por uma chave. Os mesmos frames entram na
+// tabela de paginas de cada processo que se anexa; o segmento some quando o ultimo sai.
+public class SharedSegment {
+    public static final int WORDS = 16; // tamanho de um segmento em palavras (arredondado para frames)
+
+    final int key;
+    final ArrayList<Page> frames;
+    int attached; // processos com o segmento na tabela de paginas
+
+    SharedSegment(int key, ArrayList<Page> frames) {
+        this.key = key;
+        this.frames = frames;
+    }
+
+    int words() {
+        int n = 0;
+        for (Page pg : frames) {
+            n += pg.size;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,19 @@
+package Software;
+
+import Software.ProcessManager.PCB;
+
+// Semaforo ou mutex de processos convidados, identificado por uma chave. Quem nao pode
+// prosseguir espera bloqueado em 'waiters' (fila FIFO). Acesso com o processLock do ProcessManager.
+public class SyncObject {
+    final int key;
+    final boolean mutex;
+    int value;  // semaforo: contador de permissoes
+    PCB owner;  // mutex: processo que o detem (null = livre)
+    final PCBQueue waiters = new PCBQueue();
+    long handoffs; // vezes em que foi passado direto a um processo que esperava
+
+    SyncObject(int key, boolean mutex) {
+        this.key = key;
+        this.mutex = mutex;
+    }
+}
@@ -10,7 +10,7 @@ public class SysCallHandling {
         hw = _hw;
     }
 
-    public void stop() {
+    public void stop(CPU cpu) {
         System.out.println("SYSCALL STOP");
         processManager.terminateRunningProcess();
     }
@@ -19,12 +19,50 @@ public class SysCallHandling {
         processManager = _processManager;
     }
 
-    public void handle() {
-        System.out.println("SYSCALL pars: " + hw.cpu.reg[8] + " / " + hw.cpu.reg[9]);
-        if (hw.cpu.reg[8] == 1) {
-            // Leitura
-        } else if (hw.cpu.reg[8] == 2) {
-            System.out.println("OUT: " + hw.mem.pos[hw.cpu.reg[9]].p);
+    public void handle(CPU cpu) {
+        System.out.println("SYSCALL pars: " + cpu.reg[8] + " / " + cpu.reg[9]);
+        if (cpu.reg[8] == 1) {
+            // Leitura: o processo bloqueia ate o console entregar o valor (comando "in")
+            int addr = cpu.getMemAddr(cpu.reg[9]);
+            if (addr >= 0) {
+                processManager.blockForInput(cpu, addr);
+            }
+        } else if (cpu.reg[8] == 2) {
+            int addr = cpu.getMemAddr(cpu.reg[9]);
+            if (addr >= 0) {
+                System.out.println("OUT: " + hw.mem.p(addr));
+            }
+        } else if (cpu.reg[8] == 3) {
+            // Memoria compartilhada: anexa o segmento de chave reg9; reg9 <- endereco logico (-1 se falhou)
+            cpu.reg[9] = processManager.attachShared(cpu.reg[9]);
+        } else if (cpu.reg[8] == 4 || cpu.reg[8] == 5) {
+            // Mensagens: reg9 aponta para [chave, valor]. 4 envia o valor; 5 recebe no lugar do valor.
+            // Bloqueiam com a fila cheia (envio) ou vazia (recebimento).
+            int keyAddr = cpu.getMemAddr(cpu.reg[9]);
+            int valueAddr = keyAddr >= 0 ? cpu.getMemAddr(cpu.reg[9] + 1) : -1;
+            if (valueAddr >= 0) {
+                int key = hw.mem.p(keyAddr);
+                if (cpu.reg[8] == 4) {
+                    processManager.sendMessage(cpu, key, hw.mem.p(valueAddr));
+                } else {
+                    processManager.receiveMessage(cpu, key, valueAddr);
+                }
+            }
+        } else if (cpu.reg[8] == 6) {
+            // Semaforo: reg9 aponta para [chave, valor inicial]
+            int keyAddr = cpu.getMemAddr(cpu.reg[9]);
+            int valueAddr = keyAddr >= 0 ? cpu.getMemAddr(cpu.reg[9] + 1) : -1;
+            if (valueAddr >= 0) {
+                processManager.semInit(hw.mem.p(keyAddr), hw.mem.p(valueAddr));
+            }
+        } else if (cpu.reg[8] == 7) {
+            processManager.semWait(cpu, cpu.reg[9]);    // P no semaforo de chave reg9 (pode bloquear)
+        } else if (cpu.reg[8] == 8) {
+            processManager.semSignal(cpu.reg[9]);       // V no semaforo de chave reg9
+        } else if (cpu.reg[8] == 9) {
+            processManager.mutexLock(cpu, cpu.reg[9]);  // trava o mutex de chave reg9 (pode bloquear)
+        } else if (cpu.reg[8] == 10) {
+            processManager.mutexUnlock(cpu.reg[9]);     // destrava o mutex de chave reg9
         } else {
             System.out.println("PARAMETRO INVALIDO");
         }
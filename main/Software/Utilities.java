@@ -8,10 +8,12 @@ import Programs.Program;
 public class Utilities {
     private MemoryManager memoryManager;
     private HW hw; 
+    public final MemoryDumper dumper;
 
     public Utilities(MemoryManager _memoryManager, HW _hw) {
         memoryManager = _memoryManager;
         hw = _hw;
+        dumper = new MemoryDumper(hw.mem, memoryManager.pageSize);
     }
 
     public ArrayList<Page> loadProgram(Word[] p) {
@@ -27,26 +29,11 @@ public class Utilities {
     }
 
     public void dump(Word w) {
-        System.out.print("[ ");
-        System.out.print(w.opc);
-        System.out.print(", ");
-        System.out.print(w.ra);
-        System.out.print(", ");
-        System.out.print(w.rb);
-        System.out.print(", ");
-        System.out.print(w.p);
-        System.out.println("  ] ");
+        System.out.println("[ " + w.opc + ", " + w.ra + ", " + w.rb + ", " + w.p + "  ] ");
     }
 
     public void dump(int ini, int fim) {
-        Word[] m = hw.mem.pos;
-        for (int i = ini; i < fim; i++) {
-            if(i % 8 == 0)
-                System.out.println("Frame :"+ i / 8);
-            System.out.print(i);
-            System.out.print(":  ");
-            dump(m[i] != null ? m[i] : new Word(Opcode.DATA,-1,-1,-1));
-        }
+        dumper.dump(ini, fim, MemoryDumper.ALL, 0);
     }
 
 }
@@ -0,0 +1,148 @@
+package Software;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import Hardware.AccessBits;
+import Software.ProcessManager.PCB;
+
+// Estimativa de working set por amostragem dos bits de acesso (MemoryManager.accessBits): a cada
+// amostra, todo frame com REFERENCED ligado tem o bit limpo e a amostra anotada. O working set de
+// um processo sao os seus frames referenciados nas ultimas 'window' amostras; o mapa de calor conta,
+// por frame, em quantas amostras ele foi referenciado. A ultima referencia e zerada pelo
+// MemoryManager quando o frame muda de dono e acompanha o conteudo na compactacao; o mapa de calor
+// fica com o frame fisico. Os contadores ficam em blocos de BLOCK frames criados na primeira
+// referencia, e a amostra so visita frames ocupados. Chamado com o processLock do ProcessManager.
+public class WorkingSet {
+    public static final int DEFAULT_WINDOW = 8;
+    public static final int OVERSIZED = 2; // alerta quando frames carregados > OVERSIZED * pico do working set
+    private static final String HEAT = " .:-=+*#%@";
+    private static final int BLOCK_SHIFT = 12;
+    private static final int MASK = (1 << BLOCK_SHIFT) - 1;
+
+    private final MemoryManager mm;
+    private final AccessBits bits;
+    private final int pageSize;
+    private final long[][] lastRef; // amostra da ultima referencia (0 = nunca), em blocos
+    private final long[][] heat;    // amostras em que o frame foi referenciado, em blocos
+    private long tick;             // amostras feitas
+    private int window = DEFAULT_WINDOW;
+
+    public WorkingSet(MemoryManager mm) {
+        this.mm = mm;
+        this.bits = mm.accessBits;
+        this.pageSize = mm.pageSize;
+        int blocks = (mm.frameCount >>> BLOCK_SHIFT) + 1;
+        this.lastRef = new long[blocks][];
+        this.heat = new long[blocks][];
+        mm.workingSet = this;
+    }
+
+    public void setWindow(int samples) {
+        window = Math.max(1, samples);
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    private static long get(long[][] table, int frame) {
+        long[] block = table[frame >>> BLOCK_SHIFT];
+        return block == null ? 0 : block[frame & MASK];
+    }
+
+    private static void put(long[][] table, int frame, long v) {
+        long[] block = table[frame >>> BLOCK_SHIFT];
+        if (block == null) {
+            if (v == 0) {
+                return;
+            }
+            block = table[frame >>> BLOCK_SHIFT] = new long[MASK + 1];
+        }
+        block[frame & MASK] = v;
+    }
+
+    long lastReference(int frame) {
+        return get(lastRef, frame);
+    }
+
+    void setLastReference(int frame, long sample) {
+        put(lastRef, frame, sample);
+    }
+
+    public long samples() {
+        return tick;
+    }
+
+    // Uma amostra: colhe e limpa os bits R e recalcula working set e frames sujos dos processos
+    public void sample(List<PCB> processes) {
+        tick++;
+        // frame livre nao e acessado: seus bits sao zerados quando ele volta a ser entregue
+        for (int f = mm.nextBusyFrame(0); f >= 0; f = mm.nextBusyFrame(f + 1)) {
+            int b = bits.get(f);
+            if ((b & Page.REFERENCED) != 0) {
+                bits.set(f, b & ~Page.REFERENCED);
+                put(lastRef, f, tick);
+                put(heat, f, get(heat, f) + 1);
+            }
+        }
+        for (PCB pcb : processes) {
+            int ws = 0, dirty = 0;
+            for (Page pg : pcb.pages) {
+                for (int f = pg.pageStart / pageSize; f < (pg.pageEnd + pageSize - 1) / pageSize; f++) {
+                    long last = get(lastRef, f);
+                    if (last > 0 && last > tick - window) {
+                        ws++;
+                    }
+                    if ((bits.get(f) & Page.DIRTY) != 0) {
+                        dirty++;
+                    }
+                }
+            }
+            pcb.workingSet = ws;
+            pcb.workingSetPeak = Math.max(pcb.workingSetPeak, ws);
+            pcb.dirtyFrames = dirty;
+        }
+    }
+
+    // frames que a tabela de paginas do processo ocupa (paginas grandes contam todos os seus frames)
+    public int frames(PCB pcb) {
+        int n = 0;
+        for (Page pg : pcb.pages) {
+            n += (pg.size + pageSize - 1) / pageSize;
+        }
+        return n;
+    }
+
+    public boolean oversized(PCB pcb) {
+        return tick >= window && frames(pcb) > OVERSIZED * Math.max(pcb.workingSetPeak, 1);
+    }
+
+    // Mapa de calor em texto: uma grade de 64 frames por linha (intensidade pela fracao das amostras
+    // em que o frame foi referenciado), seguida de uma linha 'frame;pid;amostras;sujo' por frame.
+    // 'owner' da o PID dono de cada frame (0 = livre). Retorna quantos frames foram gravados.
+    public int exportHeatmap(Path file, int[] owner) throws IOException {
+        int frames = bits.frames();
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("# mapa de calor: " + frames + " frames de " + pageSize + " palavras, " + tick
+                    + " amostras, escala '" + HEAT + "'");
+            for (int f = 0; f < frames; f += 64) {
+                StringBuilder row = new StringBuilder();
+                row.append(String.format("%5d ", f));
+                for (int g = f; g < Math.min(f + 64, frames); g++) {
+                    int level = tick == 0 ? 0 : (int) ((get(heat, g) * (HEAT.length() - 1) + tick - 1) / tick);
+                    row.append(HEAT.charAt(level));
+                }
+                out.println(row);
+            }
+            out.println("frame;pid;amostras;sujo");
+            for (int f = 0; f < frames; f++) {
+                out.println(f + ";" + owner[f] + ";" + get(heat, f) + ";" + ((bits.get(f) & Page.DIRTY) != 0 ? 1 : 0));
+            }
+        }
+        return frames;
+    }
+}
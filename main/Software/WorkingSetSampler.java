@@ -0,0 +1,36 @@
+package Software;
+
+// Daemon de amostragem do working set: a cada intervalo o ProcessManager colhe os bits de
+// acesso dos frames e atualiza o working set dos processos.
+public class WorkingSetSampler extends Thread {
+    private final ProcessManager processManager;
+    private final long intervalMs;
+    private volatile boolean running = true;
+
+    public WorkingSetSampler(ProcessManager processManager, long intervalMs) {
+        this.processManager = processManager;
+        this.intervalMs = intervalMs;
+        this.setName("WorkingSet-Sampler");
+        this.setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(intervalMs);
+                processManager.sampleWorkingSets();
+            } catch (InterruptedException e) {
+                // stopSampler: sai do laco
+            } catch (Exception e) {
+                System.err.println("Erro na thread de amostragem: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public void stopSampler() {
+        this.running = false;
+        this.interrupt();
+    }
+}
@@ -0,0 +1,141 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import Programs.Program;
+import Programs.Programs;
+import Software.ProgramRunner;
+import Software.ProgramRunner.Result;
+
+// Lote de execucoes independentes (regressao): cada programa sob muitas entradas, espalhado num
+// ForkJoinPool. Cada thread do pool reaproveita o seu ProgramRunner (CPU + memoria isoladas), entao
+// nao ha estado compartilhado entre as execucoes e a vazao cresce com os nucleos do hospedeiro.
+//   java main.BatchRunner [--runs n] [--threads k] [--page p]
+public class BatchRunner {
+    private static final int LEAF = 32; // execucoes por tarefa folha
+
+    // Uma execucao pedida: programa e as entradas para as leituras (syscall 1), em ordem
+    public static class Job {
+        public final Program program;
+        public final int[] inputs;
+
+        public Job(Program program, int... inputs) {
+            this.program = program;
+            this.inputs = inputs;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int memWords;
+    private final int pageSize;
+    private final ThreadLocal<ProgramRunner> runners;
+
+    public BatchRunner(int threads, int memWords, int pageSize) {
+        this.pool = new ForkJoinPool(threads);
+        this.memWords = memWords;
+        this.pageSize = pageSize;
+        this.runners = ThreadLocal.withInitial(() -> new ProgramRunner(this.memWords, this.pageSize));
+    }
+
+    // Executa todos os jobs; o resultado i corresponde ao job i
+    public Result[] runAll(List<Job> jobs) {
+        Result[] results = new Result[jobs.size()];
+        pool.invoke(new Slice(jobs, results, 0, jobs.size()));
+        return results;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private class Slice extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Job> jobs;
+        private final Result[] results;
+        private final int from;
+        private final int to;
+
+        Slice(List<Job> jobs, Result[] results, int from, int to) {
+            this.jobs = jobs;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF) {
+                ProgramRunner runner = runners.get();
+                for (int i = from; i < to; i++) {
+                    Job job = jobs.get(i);
+                    results[i] = runner.run(job.program, job.inputs);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Slice(jobs, results, from, mid), new Slice(jobs, results, mid, to));
+        }
+    }
+
+    // Todo programa de Programs.progs com as entradas 0..runs-1 (uma por execucao)
+    public static List<Job> regression(int runs) {
+        ArrayList<Job> jobs = new ArrayList<>();
+        for (Program p : new Programs().progs) {
+            if (p == null) {
+                continue;
+            }
+            for (int i = 0; i < runs; i++) {
+                jobs.add(new Job(p, i));
+            }
+        }
+        return jobs;
+    }
+
+    public static void main(String[] args) {
+        int runs = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int pageSize = 8;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--runs")) {
+                runs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--page")) {
+                pageSize = Integer.parseInt(args[++i]);
+            }
+        }
+
+        List<Job> jobs = regression(runs);
+        BatchRunner batch = new BatchRunner(threads, 1024, pageSize);
+        batch.runAll(jobs.subList(0, Math.min(jobs.size(), 2000))); // aquecimento do JIT
+        long t0 = System.nanoTime();
+        Result[] results = batch.runAll(jobs);
+        double secs = (System.nanoTime() - t0) / 1e9;
+        batch.shutdown();
+
+        // resumo por programa: execucoes, erros, instrucoes e saida da primeira execucao
+        Map<String, long[]> summary = new LinkedHashMap<>();
+        Map<String, String> sample = new LinkedHashMap<>();
+        long instructions = 0;
+        for (Result r : results) {
+            long[] s = summary.computeIfAbsent(r.program, k -> new long[3]);
+            s[0]++;
+            s[1] += r.ok() ? 0 : 1;
+            s[2] += r.instructions;
+            instructions += r.instructions;
+            sample.putIfAbsent(r.program, r.ok() ? "OUT " + r.outputs : r.error);
+        }
+        System.out.println("programa\texecucoes\terros\tinstr/exec\texemplo");
+        for (Map.Entry<String, long[]> e : summary.entrySet()) {
+            long[] s = e.getValue();
+            System.out.printf("%-12s\t%d\t\t%d\t%d\t\t%s%n", e.getKey(), s[0], s[1], s[2] / s[0], sample.get(e.getKey()));
+        }
+        System.out.printf("%d execucoes em %.2f s com %d threads: %.0f execucoes/s, %.1f M instrucoes/s%n",
+                results.length, secs, threads, results.length / secs, instructions / secs / 1e6);
+    }
+}
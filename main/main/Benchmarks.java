@@ -0,0 +1,835 @@
+package main;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+import Hardware.*;
+import Programs.Program;
+import Programs.Programs;
+import Software.*;
+
+// Medicoes de desempenho do simulador, fora do console:
+//   java main.Benchmarks paginas|mensagens|passagem|cluster|aritmetica|comandos|ciclos|cache|solo|contexto|blocos|todos
+public class Benchmarks {
+
+    public static void main(String[] args) {
+        String which = args.length > 0 ? args[0] : "todos";
+        if (which.equals("paginas") || which.equals("todos")) {
+            pageSizes();
+        }
+        if (which.equals("mensagens") || which.equals("todos")) {
+            messages();
+        }
+        if (which.equals("passagem") || which.equals("todos")) {
+            handoff();
+        }
+        if (which.equals("cluster") || which.equals("todos")) {
+            cluster();
+        }
+        if (which.equals("aritmetica") || which.equals("todos")) {
+            arithmetic();
+        }
+        if (which.equals("comandos") || which.equals("todos")) {
+            commandServer();
+        }
+        if (which.equals("ciclos") || which.equals("todos")) {
+            cycles();
+        }
+        if (which.equals("cache") || which.equals("todos")) {
+            cachePlacement();
+        }
+        if (which.equals("solo") || which.equals("todos")) {
+            soloFastPath();
+        }
+        if (which.equals("contexto") || which.equals("todos")) {
+            contextSwitch();
+        }
+        if (which.equals("blocos") || which.equals("todos")) {
+            blockCopy();
+        }
+    }
+
+    // Custo de traducao e fragmentacao interna para varios tamanhos de pagina, com e sem paginas grandes
+    static void pageSizes() {
+        System.out.println("=== Tamanho de pagina: traducao e fragmentacao interna ===");
+        System.out.println("pagina\tgrande\tpaginas/proc\tfrag.interna\tns/traducao");
+        int[] sizes = {4, 8, 16, 32, 64, 128};
+        int[] hugeFrames = {0, 8};
+        Program big = new Program("grande", filler(3000));
+        for (int size : sizes) {
+            for (int huge : hugeFrames) {
+                Memory mem = new Memory(1 << 16);
+                MemoryManager mm = new MemoryManager(mem, size);
+                mm.setHugePages(huge);
+
+                int tablePages = 0;
+                int images = 0;
+                for (Program p : new Programs().progs) {
+                    tablePages += mm.alloc(p.image).size();
+                    images++;
+                }
+                ArrayList<Page> bigPages = mm.alloc(big.image);
+                tablePages += bigPages.size();
+                images++;
+
+                CPU cpu = new CPU(mem, false);
+                cpu.setPageSize(size);
+                cpu.setContext(bigPages, 0);
+                double ns = timeTranslation(cpu, big.image.length);
+
+                System.out.printf("%d\t%s\t%.1f\t\t%d\t\t%.2f%n", size, huge > 0 ? huge * size : "-",
+                        (double) tablePages / images, mm.internalFragmentation(), ns);
+            }
+        }
+    }
+
+    private static double timeTranslation(CPU cpu, int logicalSize) {
+        final int ops = 20_000_000;
+        int sink = 0;
+        for (int warm = 0; warm < 3; warm++) {  // aquece o JIT
+            for (int i = 0; i < ops / 10; i++) {
+                sink += cpu.getMemAddr((int) ((i * 7919L) % logicalSize));
+            }
+        }
+        long t0 = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            sink += cpu.getMemAddr((int) ((i * 7919L) % logicalSize));
+        }
+        long t1 = System.nanoTime();
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return (double) (t1 - t0) / ops;
+    }
+
+    // Vazao e latencia das filas de mensagens: pares produtor/consumidor trocando N mensagens,
+    // no escalonador da CPU unica e com threads convidadas
+    static void messages() {
+        System.out.println("=== Mensagens entre processos: vazao e latencia ===");
+        System.out.println("modo\t\tpares\tmensagens\tmsg/s\t\tp50(us)\tp99(us)");
+        messageRun("escalonador", 0, 1, 2_000);
+        messageRun("threads x1", 1, 1, 20_000);
+        messageRun("threads x2", 2, 1, 20_000);
+        messageRun("threads x4", 4, 4, 20_000);
+    }
+
+    private static void messageRun(String label, int carriers, int pairs, int perPair) {
+        ArrayList<Word[]> images = new ArrayList<>();
+        for (int k = 0; k < pairs; k++) {
+            images.add(consumer(k + 1, perPair));
+            images.add(producer(k + 1, perPair));
+        }
+        GuestRun run = runGuests(carriers, images, null);
+        long total = (long) pairs * perPair;
+        System.out.printf("%s\t%d\t%d\t\t%.0f\t\t%.2f\t%.2f%n", label, pairs, total,
+                total / (run.nanos / 1e9), run.pm.messageLatency.percentile(0.50) / 1000.0,
+                run.pm.messageLatency.percentile(0.99) / 1000.0);
+    }
+
+    // Passagem sob disputa: ping-pong entre dois processos por semaforos, e contador compartilhado
+    // incrementado por varios processos com mutex (syscall) e com spinlock por CAS
+    static void handoff() {
+        System.out.println("=== Sincronizacao entre processos: passagem sob disputa ===");
+        System.out.println("modo\t\tcenario\t\toperacoes\top/s\t\tpassagens\tp50(us)\tp99(us)\tcontador");
+        int[] carriers = {0, 1, 4};
+        for (int c : carriers) {
+            String label = c == 0 ? "escalonador" : "threads x" + c;
+            int rounds = c == 0 ? 1_000 : 10_000;
+            int perWorker = c == 0 ? 500 : 2_000;
+            ArrayList<Word[]> images = new ArrayList<>();
+            images.add(pingA(rounds));
+            images.add(pingB(rounds));
+            handoffRow(label, "ping-pong sem", 2L * rounds, runGuests(c, images, null), "-");
+
+            images.clear();
+            for (int k = 0; k < 4; k++) {
+                images.add(mutexWorker(perWorker));
+            }
+            GuestRun run = runGuests(c, images, sharedHolder());
+            handoffRow(label, "mutex x4", 4L * perWorker, run, run.maxOut + "/" + 4 * perWorker);
+
+            for (int k = 0; k < 4; k++) {
+                images.set(k, casWorker(perWorker));
+            }
+            run = runGuests(c, images, sharedHolder());
+            handoffRow(label, "spin CAS x4", 4L * perWorker, run, run.maxOut + "/" + 4 * perWorker);
+        }
+    }
+
+    private static void handoffRow(String label, String scenario, long ops, GuestRun run, String counter) {
+        LatencyHistogram h = run.pm.syncLatency;
+        System.out.printf("%s\t%s\t%d\t\t%.0f\t\t%d\t\t%.2f\t%.2f\t%s%n", label, scenario, ops,
+                ops / (run.nanos / 1e9), h.count(), h.percentile(0.50) / 1000.0, h.percentile(0.99) / 1000.0, counter);
+    }
+
+    // resultado de uma carga de convidados: tempo ate todos terminarem e o maior valor impresso (OUT)
+    private static class GuestRun {
+        ProcessManager pm;
+        long nanos;
+        int maxOut;
+    }
+
+    // Roda as imagens num sistema novo (carriers = 0: escalonador da CPU unica) ate todas terminarem.
+    // 'holder', se dado, e criado antes (espera-se ele bloquear) e morto no fim: segura o segmento
+    // compartilhado enquanto os outros entram e saem. A saida do simulador e descartada, so as
+    // linhas OUT sao lidas.
+    private static GuestRun runGuests(int carriers, ArrayList<Word[]> images, Word[] holder) {
+        PrintStream out = System.out;
+        OutScanner scanner = new OutScanner();
+        System.setOut(new PrintStream(scanner)); // o simulador imprime cada evento
+        GuestRun run = new GuestRun();
+        try {
+            Sistema s = new Sistema(4096);
+            run.pm = s.so.processManager;
+            if (carriers > 0) {
+                run.pm.useGuestThreads(carriers);
+            }
+            run.pm.startSchedulerThread();
+            ProcessManager.PCB keeper = null;
+            if (holder != null) {
+                keeper = run.pm.createProcess(new Program("holder", holder));
+                while (keeper.state != ProcessManager.ProcessState.BLOCKED) { // segmento ja anexado
+                    Thread.sleep(1);
+                }
+            }
+            ArrayList<ProcessManager.PCB> workers = new ArrayList<>();
+            long t0 = System.nanoTime();
+            for (Word[] image : images) {
+                workers.add(run.pm.createProcess(new Program("bench", image)));
+            }
+            for (ProcessManager.PCB pcb : workers) {
+                while (run.pm.getProcess(pcb.pid) == pcb) {
+                    Thread.sleep(1);
+                }
+            }
+            run.nanos = System.nanoTime() - t0;
+            if (keeper != null) {
+                run.pm.killProcess(keeper.pid);
+            }
+            while (run.pm.hasActiveProcesses()) {
+                Thread.sleep(1);
+            }
+            run.pm.shutdownScheduler();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            System.setOut(out);
+        }
+        run.maxOut = scanner.maxOut;
+        return run;
+    }
+
+    // descarta a saida, guardando o maior valor das linhas "OUT: v"
+    private static class OutScanner extends OutputStream {
+        private final StringBuilder line = new StringBuilder();
+        volatile int maxOut = Integer.MIN_VALUE;
+
+        @Override
+        public synchronized void write(int b) {
+            if (b != '\n') {
+                if (line.length() < 32) {
+                    line.append((char) b);
+                }
+                return;
+            }
+            if (line.length() > 5 && line.indexOf("OUT: ") == 0) {
+                try {
+                    maxOut = Math.max(maxOut, Integer.parseInt(line.substring(5).trim()));
+                } catch (NumberFormatException e) {
+                    // linha truncada: ignora
+                }
+            }
+            line.setLength(0);
+        }
+    }
+
+    // Vazao do cluster: o mesmo lote de processos "carga" despachado para 1, 2 e 4 nos
+    static void cluster() {
+        System.out.println("=== Cluster: vazao com o numero de nos ===");
+        System.out.println("nos\ttipo\tprocessos\tsegundos\tprocessos/s\tganho");
+        final int jobs = 256;
+        for (boolean remote : new boolean[]{false, true}) {
+            double base = 0;
+            for (int n : new int[]{0, 1, 2, 4}) { // rodada 0: aquecimento (1 no), nao impressa
+                PrintStream out = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                Cluster c = null;
+                double secs;
+                try {
+                    c = new Cluster(Math.max(n, 1), remote, 8, 0);
+                    long t0 = System.nanoTime();
+                    for (int j = 0; j < jobs; j++) {
+                        c.exec("carga", ProcessManager.DEFAULT_PRIORITY);
+                    }
+                    while (!c.idle()) {
+                        Thread.sleep(2);
+                    }
+                    secs = (System.nanoTime() - t0) / 1e9;
+                } catch (Exception e) {
+                    System.setOut(out);
+                    System.out.println(n + "\t" + (remote ? "remoto" : "local") + "\tfalhou: " + e.getMessage());
+                    continue;
+                } finally {
+                    if (c != null) {
+                        c.shutdown();
+                    }
+                    System.setOut(out);
+                }
+                if (n == 0) {
+                    continue;
+                }
+                if (n == 1) {
+                    base = jobs / secs;
+                }
+                System.out.printf("%d\t%s\t%d\t\t%.2f\t\t%.1f\t\t%.2fx%n", n, remote ? "remoto" : "local", jobs, secs,
+                        jobs / secs, (jobs / secs) / base);
+            }
+        }
+    }
+
+    // Estimativa independente do hospedeiro: ciclos simulados de cada programa (sem E/S) e o tempo
+    // que levaria num relogio nominal de 1 MHz, ao lado do tempo real medido aqui
+    static void cycles() {
+        System.out.println("=== Ciclos simulados por programa ===");
+        System.out.println("programa\tciclos\t\tms a 1 MHz\tus reais");
+        for (String name : new String[]{"fatorialV2", "carga", "tmini"}) {
+            Program p = new Programs().retrieveProgram(name);
+            if (p == null) {
+                continue;
+            }
+            long[] result = runCycles(p.image);
+            System.out.printf("%s\t%s%d\t\t%.3f\t\t%.1f%n", name, name.length() < 8 ? "\t" : "", result[0],
+                    result[0] / 1000.0, result[1] / 1000.0);
+        }
+    }
+
+    // Executa a imagem uma vez direto na CPU; retorna {ciclos, nanossegundos reais}
+    private static long[] runCycles(Word[] image) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Sistema s = new Sistema(1024);
+            s.hw.cpu.setDebug(false);
+            ArrayList<Page> pages = s.so.memoryManager.alloc(image);
+            s.hw.cpu.setContext(pages, 0);
+            long c0 = s.hw.cpu.cycles;
+            long t0 = System.nanoTime();
+            s.hw.cpu.run();
+            return new long[]{s.hw.cpu.cycles - c0, System.nanoTime() - t0};
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    // Efeito da posicao dos frames na cache: o mesmo programa (varre um vetor de 96 palavras 200
+    // vezes) com frames contiguos e com frames intercalados (memoria fragmentada), em varias caches
+    static void cachePlacement() {
+        System.out.println("=== Cache: frames contiguos x intercalados ===");
+        System.out.println("cache\t\t\tframes\t\tfalhas L1\tfalhas L2\tciclos");
+        String[] specs = {"128/4/1", "128/4/2/lru", "128/4/2/plru", "128/4/1,1024/8/4/plru"};
+        for (String spec : specs) {
+            for (boolean scattered : new boolean[]{false, true}) {
+                PrintStream out = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                CacheStats stats = new CacheStats();
+                long cycles;
+                try {
+                    Sistema s = new Sistema(1024);
+                    s.hw.cpu.setDebug(false);
+                    s.hw.cpu.setCache(Cache.parse(spec));
+                    s.hw.cpu.setCacheStats(stats);
+                    MemoryManager mm = s.so.memoryManager;
+                    if (scattered) {
+                        // ocupa 28 frames e devolve os pares: o programa fica em frames alternados
+                        ArrayList<ArrayList<Page>> fillers = new ArrayList<>();
+                        for (int i = 0; i < 28; i++) {
+                            fillers.add(mm.alloc(filler(mm.pageSize)));
+                        }
+                        for (int i = 0; i < 28; i += 2) {
+                            mm.free(fillers.get(i));
+                        }
+                    }
+                    ArrayList<Page> pages = mm.alloc(arraySweep(16, 96, 200));
+                    s.hw.cpu.setContext(pages, 0);
+                    long c0 = s.hw.cpu.cycles;
+                    s.hw.cpu.run();
+                    cycles = s.hw.cpu.cycles - c0;
+                } finally {
+                    System.setOut(out);
+                }
+                System.out.printf("%-22s\t%s\t%d\t\t%d\t\t%d%n", spec, scattered ? "intercalados" : "contiguos",
+                        stats.misses[0], stats.misses[1], cycles);
+            }
+        }
+    }
+
+    // le base..base+n-1 com LDX, 'times' vezes; o vetor fica logo depois do codigo
+    private static Word[] arraySweep(int base, int n, int times) {
+        Word[] image = new Word[base + n];
+        Word[] code = {
+                new Word(Opcode.LDI, 3, -1, times),
+                new Word(Opcode.LDI, 1, -1, base),   // 1: inicio de uma varredura
+                new Word(Opcode.LDI, 2, -1, n),
+                new Word(Opcode.LDX, 4, 1, -1),      // 3: r4 <- [r1]
+                new Word(Opcode.ADDI, 1, -1, 1),
+                new Word(Opcode.SUBI, 2, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 2, 3),
+                new Word(Opcode.SUBI, 3, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 3, 1),
+                new Word(Opcode.STOP, -1, -1, -1),
+        };
+        System.arraycopy(code, 0, image, 0, code.length);
+        for (int i = code.length; i < image.length; i++) {
+            image[i] = new Word(Opcode.DATA, -1, -1, i);
+        }
+        return image;
+    }
+
+    // Caminho rapido de processo unico: um laco longo sozinho e em par pelo escalonador, com e sem o atalho
+    static void soloFastPath() {
+        System.out.println("=== Escalonador: processo unico sem fatia ===");
+        System.out.println("processos\tatalho\tms\t\tpreempcoes\tdespachos sem fatia");
+        Program job = new Program("longo", nestedLoop(200, 30000));
+        for (int round = 0; round < 2; round++) { // rodada 0: aquecimento, nao impressa
+            for (int procs : new int[]{1, 2}) {
+                for (boolean fast : new boolean[]{false, true}) {
+                    PrintStream out = System.out;
+                    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                    long ns;
+                    long switches;
+                    long solo;
+                    Sistema s = new Sistema(1024);
+                    try {
+                        s.hw.cpu.setDebug(false);
+                        ProcessManager pm = s.so.processManager;
+                        pm.setSoloFastPath(fast);
+                        long t0 = System.nanoTime();
+                        for (int i = 0; i < procs; i++) {
+                            pm.createProcess(job);
+                        }
+                        pm.startSchedulerThread();
+                        while (pm.hasActiveProcesses()) {
+                            Thread.sleep(1);
+                        }
+                        ns = System.nanoTime() - t0;
+                        switches = pm.preemptions;
+                        solo = pm.soloDispatches;
+                    } catch (InterruptedException e) {
+                        return;
+                    } finally {
+                        s.so.processManager.shutdownScheduler();
+                        System.setOut(out);
+                    }
+                    if (round > 0) {
+                        System.out.printf("%d\t\t%s\t%.1f\t\t%d\t\t%d%n", procs, fast ? "sim" : "nao", ns / 1e6,
+                                switches, solo);
+                    }
+                }
+            }
+        }
+    }
+
+    // Custo de uma troca de contexto (salva um PCB, carrega outro) na CPU unica, sem o escalonador
+    static void contextSwitch() {
+        System.out.println("=== Troca de contexto: saveContext + loadContext ===");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Sistema s = new Sistema(1024);
+        ProcessManager pm = s.so.processManager;
+        ProcessManager.PCB a = pm.createProcess(s.progs.retrieveProgram("fatorialV2"));
+        ProcessManager.PCB b = pm.createProcess(s.progs.retrieveProgram("carga"));
+        System.setOut(out);
+        final int n = 5_000_000;
+        a.loadContext();
+        for (int round = 0; round < 3; round++) { // as duas primeiras aquecem o JIT
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                a.saveContext();
+                b.loadContext();
+                s.hw.cpu.reg[3]++;
+                b.saveContext();
+                a.loadContext();
+                s.hw.cpu.reg[4]++;
+            }
+            double ns = (double) (System.nanoTime() - t0) / (2L * n);
+            if (round == 2) {
+                System.out.printf("%.1f ns por troca (r3 de b = %d, r4 de a = %d)%n", ns, b.registers[3], a.registers[4]);
+            }
+        }
+    }
+
+    // Copia de vetor palavra a palavra (LDX/STX) e com BMOVE: instrucoes despachadas, ciclos e tempo real
+    static void blockCopy() {
+        System.out.println("=== Copia de vetor: LDX/STX x BMOVE (96 palavras, 2000 vezes) ===");
+        System.out.println("versao		instrucoes	ciclos		ms	copia ok");
+        for (int round = 0; round < 2; round++) { // rodada 0: aquecimento, nao impressa
+            for (boolean bulk : new boolean[]{false, true}) {
+                PrintStream out = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                long instructions, cycles, ns;
+                boolean ok = true;
+                try {
+                    Sistema s = new Sistema(1024);
+                    CPU cpu = s.hw.cpu;
+                    cpu.setDebug(false);
+                    ArrayList<Page> pages = s.so.memoryManager.alloc(copyLoop(bulk, 16, 96, 2000));
+                    cpu.setContext(pages, 0);
+                    long i0 = cpu.instructions, c0 = cpu.cycles, t0 = System.nanoTime();
+                    cpu.run();
+                    ns = System.nanoTime() - t0;
+                    instructions = cpu.instructions - i0;
+                    cycles = cpu.cycles - c0;
+                    for (int k = 0; k < 96; k++) {
+                        ok &= s.hw.mem.p(cpu.getMemAddr(16 + 96 + k)) == 16 + k;
+                    }
+                } finally {
+                    System.setOut(out);
+                }
+                if (round > 0) {
+                    System.out.printf("%s	%d		%d		%.2f	%s%n", bulk ? "BMOVE	" : "LDX/STX", instructions, cycles,
+                            ns / 1e6, ok ? "sim" : "NAO");
+                }
+            }
+        }
+    }
+
+    // copia o vetor [base, base+n) para [base+n, base+2n), 'times' vezes
+    private static Word[] copyLoop(boolean bulk, int base, int n, int times) {
+        Word[] image = new Word[base + 2 * n];
+        Word[] code = bulk ? new Word[]{
+                new Word(Opcode.LDI, 3, -1, times),
+                new Word(Opcode.LDI, 1, -1, base),
+                new Word(Opcode.LDI, 2, -1, base + n),
+                new Word(Opcode.LDI, 4, -1, n),
+                new Word(Opcode.BMOVE, 2, 1, 4),     // 4: [r2..r2+r4) <- [r1..r1+r4)
+                new Word(Opcode.SUBI, 3, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 3, 4),
+                new Word(Opcode.STOP, -1, -1, -1),
+        } : new Word[]{
+                new Word(Opcode.LDI, 3, -1, times),
+                new Word(Opcode.LDI, 1, -1, base),   // 1: inicio de uma copia
+                new Word(Opcode.LDI, 2, -1, base + n),
+                new Word(Opcode.LDI, 4, -1, n),
+                new Word(Opcode.LDX, 5, 1, -1),      // 4: r5 <- [r1]
+                new Word(Opcode.STX, 2, 5, -1),      //    [r2] <- r5
+                new Word(Opcode.ADDI, 1, -1, 1),
+                new Word(Opcode.ADDI, 2, -1, 1),
+                new Word(Opcode.SUBI, 4, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 4, 4),
+                new Word(Opcode.SUBI, 3, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 3, 1),
+                new Word(Opcode.STOP, -1, -1, -1),
+        };
+        System.arraycopy(code, 0, image, 0, code.length);
+        for (int i = code.length; i < image.length; i++) {
+            image[i] = new Word(Opcode.DATA, -1, -1, i < base + n ? i : 0);
+        }
+        return image;
+    }
+
+    // outer x inner iteracoes de um laco vazio (cada contador cabe nos 16 bits da CPU)
+    private static Word[] nestedLoop(int outer, int inner) {
+        return new Word[]{
+                new Word(Opcode.LDI, 0, -1, outer),
+                new Word(Opcode.LDI, 1, -1, inner),   // 1
+                new Word(Opcode.SUBI, 1, -1, 1),      // 2
+                new Word(Opcode.JMPIGK, -1, 1, 2),
+                new Word(Opcode.SUBI, 0, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 0, 1),
+                new Word(Opcode.STOP, -1, -1, -1),
+        };
+    }
+
+    // Gerador de carga do CommandServer: clientes concorrentes mandando "ps", um por vez ou em pipeline
+    static void commandServer() {
+        System.out.println("=== Servidor de comandos: vazao ===");
+        System.out.println("clientes\tmodo\t\tcomandos\tcomandos/s");
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Sistema s = new Sistema(1024);
+        for (int i = 0; i < 8; i++) {
+            s.so.processManager.createProcess(s.progs.retrieveProgram("fatorialV2")); // sem escalonador: ficam prontos
+        }
+        System.setOut(console);
+        CommandServer server;
+        try {
+            server = new CommandServer(new CommandProcessor(s), 0);
+        } catch (java.io.IOException e) {
+            System.out.println("falhou: " + e.getMessage());
+            return;
+        }
+        server.start();
+        final int perClient = 2000;
+        for (boolean pipelined : new boolean[]{false, true}) {
+            for (int clients : new int[]{1, 4, 16}) {
+                Thread[] ts = new Thread[clients];
+                long t0 = System.nanoTime();
+                for (int c = 0; c < clients; c++) {
+                    ts[c] = new Thread(() -> commandClient(server.getPort(), perClient, pipelined));
+                    ts[c].start();
+                }
+                for (Thread t : ts) {
+                    try {
+                        t.join();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                double secs = (System.nanoTime() - t0) / 1e9;
+                System.out.printf("%d\t\t%s\t%d\t\t%.0f%n", clients, pipelined ? "pipeline" : "um por vez",
+                        clients * perClient, clients * perClient / secs);
+            }
+        }
+        server.stopServer();
+    }
+
+    private static void commandClient(int port, int n, boolean pipelined) {
+        try (java.net.Socket sock = new java.net.Socket(java.net.InetAddress.getLoopbackAddress(), port)) {
+            OutputStream out = sock.getOutputStream();
+            java.io.BufferedReader in = new java.io.BufferedReader(new java.io.InputStreamReader(sock.getInputStream()));
+            byte[] ps = "ps\n".getBytes();
+            if (pipelined) {
+                Thread sender = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < n; i++) {
+                            out.write(ps);
+                        }
+                        out.flush();
+                    } catch (java.io.IOException e) {
+                        // leitor percebe pela conexao
+                    }
+                });
+                sender.start();
+            }
+            for (int i = 0; i < n; i++) {
+                if (!pipelined) {
+                    out.write(ps);
+                    out.flush();
+                }
+                String header = in.readLine();
+                int lines = Integer.parseInt(header.substring(3));
+                for (int k = 0; k < lines; k++) {
+                    in.readLine();
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("cliente falhou: " + e);
+        }
+    }
+
+    // Overflow de 16 bits: casos de borda (inclusive os que estouram o int do Java) e custo por instrucao
+    static void arithmetic() {
+        System.out.println("=== Aritmetica: deteccao de overflow ===");
+        System.out.println("operacao\t\t\tesperado\tdetectado");
+        Object[][] cases = {
+                {"ADD 32766 + 1", Opcode.ADD, 32766, 1, false},
+                {"ADD 32767 + 1", Opcode.ADD, 32767, 1, true},
+                {"SUB -32767 - 1", Opcode.SUB, -32767, 1, true},
+                {"ADD 2e9 + 2e9", Opcode.ADD, 2_000_000_000, 2_000_000_000, true},
+                {"MULT 181 * 181", Opcode.MULT, 181, 181, false},
+                {"MULT 256 * 128", Opcode.MULT, 256, 128, true},
+                {"MULT 65536 * 65536", Opcode.MULT, 65536, 65536, true}, // produto truncado em int daria 0
+                {"MULT -32767 * -1", Opcode.MULT, -32767, -1, false},
+        };
+        for (Object[] c : cases) {
+            Word[] image = {
+                    new Word(Opcode.LDI, 0, -1, (Integer) c[2]),
+                    new Word(Opcode.LDI, 1, -1, (Integer) c[3]),
+                    new Word((Opcode) c[1], 0, 1, -1),
+                    new Word(Opcode.STOP, -1, -1, -1)};
+            boolean detected = runBare(image, 1) > 0;
+            System.out.printf("%-24s\t%s\t\t%s%s%n", c[0], c[4], detected, detected == (Boolean) c[4] ? "" : "  <-- ERRO");
+        }
+
+        // laco com ADD/SUB/MULT/ADDI/SUBI: 7 instrucoes por volta, valores sempre dentro da faixa
+        final int turns = 30_000;
+        Word[] loop = {
+                new Word(Opcode.LDI, 0, -1, turns),
+                new Word(Opcode.LDI, 1, -1, 7),
+                new Word(Opcode.LDI, 2, -1, 3),
+                new Word(Opcode.LDI, 3, -1, 5),
+                new Word(Opcode.LDI, 4, -1, 1),
+                new Word(Opcode.ADD, 1, 2, -1), // POS 5
+                new Word(Opcode.SUB, 1, 2, -1),
+                new Word(Opcode.MULT, 3, 4, -1),
+                new Word(Opcode.ADDI, 1, -1, 9),
+                new Word(Opcode.SUBI, 1, -1, 9),
+                new Word(Opcode.SUBI, 0, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 0, 5),
+                new Word(Opcode.STOP, -1, -1, -1)};
+        runBare(loop, 50); // aquece o JIT
+        final int runs = 200;
+        long t0 = System.nanoTime();
+        runBare(loop, runs);
+        double ns = (double) (System.nanoTime() - t0) / ((long) runs * turns * 7);
+        System.out.printf("laco aritmetico: %.2f ns/instrucao%n", ns);
+    }
+
+    // Executa a imagem direto na CPU (sem escalonador nem timer), 'times' vezes; retorna quantas
+    // interrupcoes de overflow foram atendidas
+    private static long runBare(Word[] image, int times) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Sistema s = new Sistema(1024);
+            s.hw.cpu.setDebug(false);
+            ArrayList<Page> pages = s.so.memoryManager.alloc(image);
+            for (int i = 0; i < times; i++) {
+                s.hw.cpu.setContext(pages, 0);
+                s.hw.cpu.run();
+            }
+            return s.so.ih.handledCount(Interrupts.intOverflow);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    // envia n, n-1, ..., 1 para a fila 'key'
+    private static Word[] producer(int key, int n) {
+        return new Word[]{
+                new Word(Opcode.LDI, 0, -1, n),
+                new Word(Opcode.LDI, 1, -1, key),
+                new Word(Opcode.STD, 1, -1, 10),
+                new Word(Opcode.STD, 0, -1, 11),
+                new Word(Opcode.LDI, 8, -1, 4),
+                new Word(Opcode.LDI, 9, -1, 10),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.SUBI, 0, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 0, 3),
+                new Word(Opcode.STOP, -1, -1, -1),
+                new Word(Opcode.DATA, -1, -1, -1),
+                new Word(Opcode.DATA, -1, -1, -1)};
+    }
+
+    // recebe n mensagens da fila 'key'
+    private static Word[] consumer(int key, int n) {
+        return new Word[]{
+                new Word(Opcode.LDI, 0, -1, n),
+                new Word(Opcode.LDI, 1, -1, key),
+                new Word(Opcode.STD, 1, -1, 10),
+                new Word(Opcode.LDI, 8, -1, 5),
+                new Word(Opcode.LDI, 9, -1, 10),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.SUBI, 0, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 0, 3),
+                new Word(Opcode.STOP, -1, -1, -1),
+                new Word(Opcode.DATA, -1, -1, -1),
+                new Word(Opcode.DATA, -1, -1, -1),
+                new Word(Opcode.DATA, -1, -1, -1)};
+    }
+
+    // A: inicia o semaforo 11 com 1; repete P(11) V(12)
+    private static Word[] pingA(int n) {
+        return new Word[]{
+                new Word(Opcode.LDI, 1, -1, 11),
+                new Word(Opcode.STD, 1, -1, 20),
+                new Word(Opcode.LDI, 1, -1, 1),
+                new Word(Opcode.STD, 1, -1, 21),
+                new Word(Opcode.LDI, 8, -1, 6),
+                new Word(Opcode.LDI, 9, -1, 20),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.LDI, 0, -1, n),
+                new Word(Opcode.LDI, 8, -1, 7), // POS 8
+                new Word(Opcode.LDI, 9, -1, 11),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.LDI, 8, -1, 8),
+                new Word(Opcode.LDI, 9, -1, 12),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.SUBI, 0, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 0, 8),
+                new Word(Opcode.STOP, -1, -1, -1),
+                new Word(Opcode.DATA, -1, -1, -1),
+                new Word(Opcode.DATA, -1, -1, -1),
+                new Word(Opcode.DATA, -1, -1, -1),
+                new Word(Opcode.DATA, -1, -1, -1), // POS 20
+                new Word(Opcode.DATA, -1, -1, -1)};
+    }
+
+    // B: repete P(12) V(11)
+    private static Word[] pingB(int n) {
+        return new Word[]{
+                new Word(Opcode.LDI, 0, -1, n),
+                new Word(Opcode.LDI, 8, -1, 7), // POS 1
+                new Word(Opcode.LDI, 9, -1, 12),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.LDI, 8, -1, 8),
+                new Word(Opcode.LDI, 9, -1, 11),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.SUBI, 0, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 0, 1),
+                new Word(Opcode.STOP, -1, -1, -1)};
+    }
+
+    // anexa o segmento 7 e fica bloqueado no semaforo 99 ate ser morto
+    private static Word[] sharedHolder() {
+        return new Word[]{
+                new Word(Opcode.LDI, 8, -1, 3),
+                new Word(Opcode.LDI, 9, -1, 7),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.LDI, 8, -1, 7),
+                new Word(Opcode.LDI, 9, -1, 99),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.STOP, -1, -1, -1)};
+    }
+
+    // n vezes: lock(1); segmento[0]++; unlock(1). No fim imprime o contador.
+    private static Word[] mutexWorker(int n) {
+        return new Word[]{
+                new Word(Opcode.LDI, 8, -1, 3),
+                new Word(Opcode.LDI, 9, -1, 7),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.MOVE, 5, 9, -1), // r5 = base do segmento
+                new Word(Opcode.LDI, 0, -1, n),
+                new Word(Opcode.LDI, 8, -1, 9), // POS 5
+                new Word(Opcode.LDI, 9, -1, 1),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.LDX, 1, 5, -1),
+                new Word(Opcode.ADDI, 1, -1, 1),
+                new Word(Opcode.STX, 5, 1, -1),
+                new Word(Opcode.LDI, 8, -1, 10),
+                new Word(Opcode.LDI, 9, -1, 1),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.SUBI, 0, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 0, 5),
+                new Word(Opcode.LDI, 8, -1, 2),
+                new Word(Opcode.MOVE, 9, 5, -1),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.STOP, -1, -1, -1)};
+    }
+
+    // n vezes: gira em CAS(segmento[1], 0 -> 1); segmento[0]++; segmento[1] = 0. No fim imprime o contador.
+    private static Word[] casWorker(int n) {
+        return new Word[]{
+                new Word(Opcode.LDI, 8, -1, 3),
+                new Word(Opcode.LDI, 9, -1, 7),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.MOVE, 5, 9, -1), // r5 = contador
+                new Word(Opcode.MOVE, 6, 5, -1),
+                new Word(Opcode.ADDI, 6, -1, 1), // r6 = trava
+                new Word(Opcode.LDI, 2, -1, 1),
+                new Word(Opcode.LDI, 0, -1, n),
+                new Word(Opcode.LDI, 1, -1, 0), // POS 8: espera trava livre (0)
+                new Word(Opcode.CAS, 1, 6, 2),
+                new Word(Opcode.JMPIGK, -1, 1, 8), // estava ocupada: tenta de novo
+                new Word(Opcode.LDX, 3, 5, -1),
+                new Word(Opcode.ADDI, 3, -1, 1),
+                new Word(Opcode.STX, 5, 3, -1),
+                new Word(Opcode.LDI, 4, -1, 0),
+                new Word(Opcode.STX, 6, 4, -1), // libera a trava
+                new Word(Opcode.SUBI, 0, -1, 1),
+                new Word(Opcode.JMPIGK, -1, 0, 8),
+                new Word(Opcode.LDI, 8, -1, 2),
+                new Word(Opcode.MOVE, 9, 5, -1),
+                new Word(Opcode.SYSCALL, -1, -1, -1),
+                new Word(Opcode.STOP, -1, -1, -1)};
+    }
+
+    private static Word[] filler(int n) {
+        Word[] image = new Word[n];
+        for (int i = 0; i < n; i++) {
+            image[i] = new Word(Opcode.DATA, -1, -1, i);
+        }
+        return image;
+    }
+}
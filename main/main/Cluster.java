@@ -0,0 +1,163 @@
+package main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+import Programs.Program;
+import Programs.Programs;
+
+// Coordenador do cluster: sobe N nos Sistema (na mesma JVM ou em processos filhos ligados por
+// loopback) e despacha cada exec para o no menos carregado. ps e mem mostram todos os nos.
+//   java main.Cluster --nodes 4 [--remote] [--page n] [--threads n]
+public class Cluster {
+    private final ArrayList<ClusterNode> nodes = new ArrayList<>();
+    private final Programs programs = new Programs();
+
+    public Cluster(int count, boolean remote, int tamPag, int carriers) throws IOException {
+        for (int i = 0; i < count; i++) {
+            String name = "no" + i;
+            nodes.add(remote ? new RemoteNode(name, tamPag, carriers) : new LocalNode(name, tamPag, carriers));
+        }
+    }
+
+    public ArrayList<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    // Escolhe o no com menos processos com trabalho de CPU entre os que tem palavras livres para
+    // a imagem; empate vai para quem tem mais memoria livre. Se nenhum tiver memoria, o menos
+    // carregado recebe e o processo espera na fila de admissao dele.
+    public ClusterNode pick(int imageWords) throws IOException {
+        ClusterNode best = null;
+        int[] bestLoad = null;
+        boolean bestFits = false;
+        for (ClusterNode node : nodes) {
+            int[] load = node.load();
+            boolean fits = load[1] >= imageWords;
+            if (best == null || (fits && !bestFits)
+                    || (fits == bestFits && (load[0] < bestLoad[0] || (load[0] == bestLoad[0] && load[1] > bestLoad[1])))) {
+                best = node;
+                bestLoad = load;
+                bestFits = fits;
+            }
+        }
+        return best;
+    }
+
+    // Despacha um exec; retorna "no:pid" ou null se o programa nao existe ou foi recusado
+    public String exec(String program, int priority) throws IOException {
+        Program p = programs.retrieveProgram(program);
+        if (p == null) {
+            return null;
+        }
+        ClusterNode node = pick(p.image.length);
+        int pid = node.exec(program, priority);
+        return pid < 0 ? null : node.name() + ":" + pid;
+    }
+
+    // todos os nos sem processos
+    public boolean idle() throws IOException {
+        for (ClusterNode node : nodes) {
+            if (node.load()[2] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void ps() throws IOException {
+        for (ClusterNode node : nodes) {
+            System.out.println("=== " + node.name() + " ===");
+            System.out.print(node.ps());
+        }
+    }
+
+    public void mem() throws IOException {
+        int free = 0;
+        for (ClusterNode node : nodes) {
+            System.out.println("=== " + node.name() + " ===");
+            System.out.print(node.mem());
+            free += node.load()[1];
+        }
+        System.out.println("=== cluster: " + nodes.size() + " nós, " + free + " palavras livres ===");
+    }
+
+    public void showNodes() throws IOException {
+        System.out.println("Nó\tTrabalho\tLivres\tProcessos");
+        for (ClusterNode node : nodes) {
+            int[] load = node.load();
+            System.out.println(node.name() + "\t" + load[0] + "\t\t" + load[1] + "\t" + load[2]);
+        }
+    }
+
+    public void shutdown() {
+        for (ClusterNode node : nodes) {
+            node.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = 2;
+        boolean remote = false;
+        int tamPag = 8;
+        int carriers = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--nodes")) {
+                count = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--remote")) {   // nos em processos filhos, via loopback
+                remote = true;
+            } else if (args[i].equals("--page")) {
+                tamPag = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threads")) {
+                carriers = Integer.parseInt(args[++i]);
+            }
+        }
+        Cluster cluster = new Cluster(count, remote, tamPag, carriers);
+        System.out.println("Cluster com " + count + " nós " + (remote ? "remotos (loopback)" : "locais"));
+        printHelp();
+        Scanner scanner = new Scanner(System.in);
+        while (scanner.hasNextLine()) {
+            String command = scanner.nextLine().trim();
+            String[] tokens = command.split(" ");
+            try {
+                if (command.equals("exit")) {
+                    break;
+                } else if (command.equals("help")) {
+                    printHelp();
+                } else if (tokens[0].equals("exec") && tokens.length >= 2) {
+                    int prio = tokens.length > 2 ? Integer.parseInt(tokens[2]) : Software.ProcessManager.DEFAULT_PRIORITY;
+                    int times = tokens.length > 3 ? Integer.parseInt(tokens[3]) : 1;
+                    for (int i = 0; i < times; i++) {
+                        String where = cluster.exec(tokens[1], prio);
+                        System.out.println(where == null ? "Programa não reconhecido ou recusado" : "Processo criado em " + where);
+                    }
+                } else if (command.equals("ps")) {
+                    cluster.ps();
+                } else if (command.equals("mem")) {
+                    cluster.mem();
+                } else if (command.equals("nodes")) {
+                    cluster.showNodes();
+                } else if (!command.isEmpty()) {
+                    System.out.println("Comando desconhecido. Digite 'help' para ver os comandos disponíveis.");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Número inválido.");
+            } catch (IOException e) {
+                System.out.println("Falha ao falar com um nó: " + e.getMessage());
+            }
+        }
+        cluster.shutdown();
+        System.out.println("Cluster encerrado.");
+        System.exit(0);
+    }
+
+    private static void printHelp() {
+        System.out.println("Comandos do cluster:");
+        System.out.println("  exec <prog> [prio] [n] - Cria n processos, cada um no nó menos carregado");
+        System.out.println("  ps           - Processos de todos os nós");
+        System.out.println("  mem          - Memória de todos os nós");
+        System.out.println("  nodes        - Carga de cada nó");
+        System.out.println("  exit         - Encerra o cluster");
+    }
+}
@@ -0,0 +1,21 @@
+package main;
+
+import java.io.IOException;
+
+// Um no do cluster: um Sistema na mesma JVM (LocalNode) ou num processo filho ligado por
+// socket de loopback (RemoteNode). O Cluster so conversa com os nos por esta interface.
+public interface ClusterNode {
+    String name();
+
+    // {processos com trabalho de CPU, palavras livres, processos no sistema}
+    int[] load() throws IOException;
+
+    // Cria o processo do programa no no; retorna o PID ou -1 (programa desconhecido ou recusado)
+    int exec(String program, int priority) throws IOException;
+
+    String ps() throws IOException;
+
+    String mem() throws IOException;
+
+    void shutdown();
+}
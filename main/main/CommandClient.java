@@ -0,0 +1,63 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Cliente em lote do CommandServer: manda o script inteiro de uma vez (pipelining) e imprime as respostas.
+//   java main.CommandClient <porta> [script]      (sem script: le os comandos da entrada padrao)
+// Sai com codigo 1 se algum comando voltou ERR.
+public class CommandClient {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: java main.CommandClient <porta> [script]");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        InputStream script = args.length > 1 ? Files.newInputStream(Path.of(args[1])) : System.in;
+
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            // envia numa thread separada: o servidor responde enquanto ainda recebe comandos
+            Thread sender = new Thread(() -> {
+                try (script) {
+                    OutputStream out = s.getOutputStream();
+                    script.transferTo(out);
+                    out.flush();
+                    s.shutdownOutput();
+                } catch (IOException e) {
+                    System.err.println("Falha ao enviar o script: " + e.getMessage());
+                }
+            }, "Command-Client-Sender");
+            sender.start();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            int ok = 0;
+            int err = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("ERR ")) {
+                    err++;
+                    System.out.println(line);
+                } else if (line.startsWith("OK ")) {
+                    ok++;
+                    int n = Integer.parseInt(line.substring(3));
+                    for (int i = 0; i < n && (line = in.readLine()) != null; i++) {
+                        System.out.println(line);
+                    }
+                }
+            }
+            System.err.println(ok + " comando(s) OK, " + err + " com erro");
+            if (err > 0) {
+                System.exit(1);
+            }
+        }
+    }
+}
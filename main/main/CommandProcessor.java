@@ -0,0 +1,257 @@
+package main;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Set;
+
+import Programs.Programs;
+import Software.MemoryDumper;
+import Software.Page;
+import Software.ProcessManager;
+
+// Comandos de operacao do sistema compartilhados pelo console e pelo CommandServer.
+// Cada comando escreve a sua saida em 'out' e devolve null se deu certo, ou a mensagem de erro.
+public class CommandProcessor {
+    private static final Set<String> COMMANDS = Set.of("list", "cfg", "ps", "mem", "exec", "new", "kill", "dump", "in", "ipc", "lat",
+            "group", "groups", "ws", "heatmap");
+
+    private final Sistema sistema;
+    private final Programs programs;
+    private final ProcessManager processManager;
+
+    public CommandProcessor(Sistema sistema) {
+        this.sistema = sistema;
+        this.programs = sistema.progs;
+        this.processManager = sistema.so.processManager;
+    }
+
+    public boolean handles(String command) {
+        return COMMANDS.contains(command);
+    }
+
+    public String execute(String line, PrintStream out) {
+        String[] tokens = line.trim().split(" +");
+        try {
+            switch (tokens[0]) {
+                case "list":
+                    return listPrograms(out);
+                case "cfg":
+                    return analyzeProgram(tokens, out);
+                case "ps":
+                    out.println("Processos em execução:");
+                    processManager.listProcesses(out);
+                    return null;
+                case "mem":
+                    out.println("Estado da memória:");
+                    processManager.showMemoryStatus(out);
+                    return null;
+                case "exec":
+                    return executeProgram(tokens, out);
+                case "new":
+                    return createProgram(tokens, out);
+                case "kill":
+                    return killProcess(tokens, out);
+                case "dump":
+                    return dumpProcess(tokens, out);
+                case "in":
+                    return deliverInput(tokens, out);
+                case "ipc":
+                    processManager.showIpc(out);
+                    return null;
+                case "lat":
+                    processManager.dispatchLatency.print(out);
+                    processManager.messageLatency.print(out);
+                    processManager.syncLatency.print(out);
+                    return null;
+                case "group":
+                    return configureGroup(tokens, out);
+                case "groups":
+                    processManager.showGroups(out);
+                    return null;
+                case "ws":
+                    processManager.showWorkingSets(out);
+                    return null;
+                case "heatmap":
+                    return exportHeatmap(tokens, out);
+                default:
+                    return "Comando desconhecido: " + tokens[0];
+            }
+        } catch (NumberFormatException e) {
+            return "Número inválido: " + e.getMessage();
+        }
+    }
+
+    private String listPrograms(PrintStream out) {
+        out.println("Programas disponíveis:");
+        for (int i = 0; i < programs.progs.length; i++) {
+            if (programs.progs[i] != null) {
+                out.println("  " + programs.progs[i].name);
+            }
+        }
+        return null;
+    }
+
+    private String analyzeProgram(String[] tokens, PrintStream out) {
+        if (tokens.length != 2) {
+            return "Uso: cfg <programa>";
+        }
+        var program = programs.retrieveProgram(tokens[1]);
+        if (program == null) {
+            return "Programa não encontrado: " + tokens[1];
+        }
+        out.println("=== Análise de " + program.name + " (" + program.image.length + " palavras) ===");
+        out.println(program.analysis().summary(sistema.so.memoryManager.pageSize));
+        return null;
+    }
+
+    private String dumpProcess(String[] tokens, PrintStream out) {
+        if (tokens.length != 2) {
+            return "Uso: dump <id_do_processo>";
+        }
+        int processId = Integer.parseInt(tokens[1]);
+        ProcessManager.PCB pcb = processManager.getProcess(processId);
+        if (pcb == null) {
+            return "Processo " + processId + " não encontrado";
+        }
+
+        out.println("=== Dump do Processo " + processId + " ===");
+        out.println("Estado: " + pcb.state);
+        out.println("PC: " + pcb.pc);
+
+        StringBuilder regs = new StringBuilder("Registradores:\n");
+        for (int i = 0; i < pcb.registers.length; i++) {
+            regs.append('R').append(i).append(": ").append(pcb.registers[i]).append('\n');
+        }
+        out.print(regs);
+
+        out.println("Páginas:");
+        for (Page page : processManager.pagesOf(pcb)) {
+            out.println("  Início: " + page.pageStart + ", Fim: " + page.pageEnd + ", conteúdo: " + page.kind);
+            // Dump do conteúdo da memória para cada página
+            sistema.so.utils.dumper.dump(page.pageStart, page.pageEnd, MemoryDumper.ALL, 0, out);
+        }
+        return null;
+    }
+
+    private String executeProgram(String[] parts, PrintStream out) {
+        if (parts.length < 2 || parts.length > 4) {
+            return "Uso: exec [nome_do_programa] [prioridade 0-9] [grupo]";
+        }
+
+        String programName = parts[1];
+        int priority = parts.length >= 3 ? Integer.parseInt(parts[2]) : ProcessManager.DEFAULT_PRIORITY;
+        String group = parts.length == 4 ? parts[3] : ProcessManager.DEFAULT_GROUP;
+        var program = programs.retrieveProgram(programName);
+
+        if (program == null) {
+            return "Programa não encontrado: " + programName;
+        }
+
+        var pcb = processManager.createProcess(program, priority, group);
+        if (pcb == null) {
+            return "Falha ao criar processo para o programa: " + programName;
+        }
+        out.println("Processo criado com PID: " + pcb.pid + " para o programa: " + programName
+                + (parts.length == 4 ? " no grupo " + group : ""));
+        processManager.startSchedulerThread();
+        return null;
+    }
+
+    // group <nome> [peso=n] [frames=n] [ciclos=n] [acao=kill|pausa:ms]; o que nao vier fica como esta
+    private String configureGroup(String[] tokens, PrintStream out) {
+        if (tokens.length < 2) {
+            return "Uso: group <nome> [peso=n] [frames=n] [ciclos=n] [acao=kill|pausa:ms]";
+        }
+        int weight = -1, frames = -1;
+        long budget = -1, throttleMs = -1;
+        for (int i = 2; i < tokens.length; i++) {
+            int eq = tokens[i].indexOf('=');
+            String key = eq < 0 ? tokens[i] : tokens[i].substring(0, eq);
+            String value = eq < 0 ? "" : tokens[i].substring(eq + 1);
+            switch (key) {
+                case "peso":
+                    weight = Integer.parseInt(value);
+                    if (weight <= 0) {
+                        return "Peso deve ser positivo";
+                    }
+                    break;
+                case "frames":
+                    frames = Integer.parseInt(value);
+                    break;
+                case "ciclos":
+                    budget = Long.parseLong(value);
+                    break;
+                case "acao":
+                    if (value.equals("kill")) {
+                        throttleMs = 0;
+                    } else if (value.startsWith("pausa:")) {
+                        throttleMs = Long.parseLong(value.substring(6));
+                    } else {
+                        return "Ação desconhecida: " + value + " (kill ou pausa:ms)";
+                    }
+                    break;
+                default:
+                    return "Parâmetro desconhecido: " + key;
+            }
+        }
+        out.println(processManager.configureGroup(tokens[1], weight, frames, budget, throttleMs).describe());
+        return null;
+    }
+
+    private String exportHeatmap(String[] tokens, PrintStream out) {
+        if (tokens.length != 2) {
+            return "Uso: heatmap <arquivo>";
+        }
+        try {
+            int frames = processManager.exportHeatmap(Path.of(tokens[1]));
+            out.println("Mapa de calor de " + frames + " frames gravado em " + tokens[1]);
+            return null;
+        } catch (IOException | InvalidPathException e) {
+            return "Erro ao gravar " + tokens[1] + ": " + e.getMessage();
+        }
+    }
+
+    private String createProgram(String[] tokens, PrintStream out) {
+        if (tokens.length != 2) {
+            return "Uso: new <programa>";
+        }
+        var newProgram = new Programs().retrieveProgram(tokens[1]);
+        if (newProgram == null) {
+            return "=== Programa não reconhecido pelo sistema ===";
+        }
+        out.println("=== Criando Processo ===");
+        var pcb = processManager.createProcess(newProgram);
+        if (pcb == null) {
+            return "Falha ao criar processo para o programa: " + tokens[1];
+        }
+        out.println("Processo criado com PID: " + pcb.pid);
+        return null;
+    }
+
+    private String killProcess(String[] parts, PrintStream out) {
+        if (parts.length != 2) {
+            return "Uso: kill [pid]";
+        }
+        int pid = Integer.parseInt(parts[1]);
+        if (!processManager.killProcess(pid)) {
+            return "Não foi possível terminar o processo com PID " + pid;
+        }
+        out.println("Processo com PID " + pid + " terminado com sucesso.");
+        return null;
+    }
+
+    private String deliverInput(String[] tokens, PrintStream out) {
+        if (tokens.length != 3) {
+            return "Uso: in <pid> <valor>";
+        }
+        int pid = Integer.parseInt(tokens[1]);
+        int value = Integer.parseInt(tokens[2]);
+        if (!processManager.deliverInput(pid, value)) {
+            return "Processo " + pid + " não está aguardando leitura";
+        }
+        out.println("Valor " + value + " entregue ao processo " + pid);
+        return null;
+    }
+}
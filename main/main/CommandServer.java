@@ -0,0 +1,229 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+// Servidor de comandos do console no loopback: uma unica thread com Selector atende varios clientes.
+// Cada linha recebida e um comando do CommandProcessor (exec, ps, kill, mem, dump, ...); o cliente
+// pode mandar varias linhas sem esperar (pipelining) e as respostas voltam na mesma ordem:
+//   OK <n>       seguido de n linhas de saida
+//   ERR <msg>    comando recusado
+// Linhas vazias e comecando com '#' sao ignoradas (scripts em lote); "quit" fecha a conexao.
+public class CommandServer extends Thread {
+    private static final int MAX_LINE = 4096;
+    private static final int MAX_PENDING = 256 * 1024; // saida acumulada acima disso: para de ler do cliente
+
+    private final CommandProcessor processor;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ByteArrayOutputStream capture = new ByteArrayOutputStream(1024);
+    private final PrintStream out = new PrintStream(capture, true, StandardCharsets.UTF_8);
+    private volatile boolean running = true;
+    public long served; // comandos atendidos
+
+    // Estado de uma conexao: bytes ainda sem '\n' e respostas ainda nao escritas no socket
+    private static class Client {
+        final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+        final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        int pendingBytes;
+        boolean discarding; // linha maior que MAX_LINE: descarta ate o proximo '\n'
+        boolean closing;    // cliente fechou a escrita ou mandou quit: fecha quando esvaziar
+    }
+
+    public CommandServer(CommandProcessor processor, int port) throws IOException {
+        this.processor = processor;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 64);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.setName("Command-Server-" + getPort());
+        this.setDaemon(true);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Erro no servidor de comandos: " + e.getMessage());
+                }
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            close(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // ja fechado
+        }
+    }
+
+    public void stopServer() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel ch = server.accept();
+        if (ch == null) {
+            return;
+        }
+        ch.configureBlocking(false);
+        ch.register(selector, SelectionKey.OP_READ, new Client());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel ch = (SocketChannel) key.channel();
+        Client c = (Client) key.attachment();
+        boolean eof = ch.read(c.in) < 0;
+        // executa todas as linhas completas do buffer, na ordem em que chegaram
+        c.in.flip();
+        int start = c.in.position();
+        for (int i = start; i < c.in.limit() && !c.closing; i++) {
+            if (c.in.get(i) == '\n') {
+                if (!c.discarding) {
+                    String line = new String(c.in.array(), start, i - start, StandardCharsets.UTF_8).trim();
+                    handle(c, line);
+                }
+                c.discarding = false;
+                start = i + 1;
+            }
+        }
+        if (eof && !c.closing && !c.discarding && start < c.in.limit()) {
+            // ultima linha sem '\n' antes do fim da conexao
+            handle(c, new String(c.in.array(), start, c.in.limit() - start, StandardCharsets.UTF_8).trim());
+            start = c.in.limit();
+        }
+        c.closing |= eof;
+        c.in.position(start);
+        c.in.compact();
+        if (!c.in.hasRemaining()) {
+            // linha sem fim maior que o buffer
+            c.in.clear();
+            c.discarding = true;
+            respond(c, "ERR Linha maior que " + MAX_LINE + " bytes\n");
+        }
+        write(key);
+    }
+
+    private void handle(Client c, String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        served++;
+        if (line.equals("quit")) {
+            respond(c, "OK 0\n");
+            c.closing = true;
+            return;
+        }
+        String command = line.split(" +")[0];
+        if (!processor.handles(command)) {
+            respond(c, "ERR Comando desconhecido: " + command + "\n");
+            return;
+        }
+        capture.reset();
+        String error;
+        try {
+            error = processor.execute(line, out);
+        } catch (RuntimeException e) {
+            error = "Falha interna: " + e;
+        }
+        if (error != null) {
+            respond(c, "ERR " + error.replace('\n', ' ') + "\n");
+            return;
+        }
+        String body = capture.toString(StandardCharsets.UTF_8);
+        int lines = 0;
+        for (int i = 0; i < body.length(); i++) {
+            if (body.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        if (!body.isEmpty() && !body.endsWith("\n")) {
+            body += "\n";
+            lines++;
+        }
+        respond(c, "OK " + lines + "\n" + body);
+    }
+
+    private void respond(Client c, String text) {
+        ByteBuffer b = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        c.pending.add(b);
+        c.pendingBytes += b.remaining();
+    }
+
+    // Escreve o que o socket aceitar; o resto espera por OP_WRITE. Com muita saida pendente
+    // deixa de ler do cliente ate esvaziar, para um cliente lento nao encher a memoria.
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel ch = (SocketChannel) key.channel();
+        Client c = (Client) key.attachment();
+        while (!c.pending.isEmpty()) {
+            ByteBuffer b = c.pending.peek();
+            int n = ch.write(b);
+            c.pendingBytes -= n;
+            if (b.hasRemaining()) {
+                break;
+            }
+            c.pending.poll();
+        }
+        if (c.pending.isEmpty() && c.closing) {
+            close(key);
+            return;
+        }
+        int ops = 0;
+        if (!c.closing && c.pendingBytes < MAX_PENDING) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (!c.pending.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // ja fechado
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package main;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
+import Hardware.CPU;
+import Hardware.Cache;
 import Programs.Programs;
-import Software.Page;
+import Software.CompactionThread;
+import Software.MemoryDumper;
+import Software.MigrationServer;
 import Software.ProcessManager;
+import Software.WorkingSetSampler;
 import main.Sistema;
 
 public class ConsoleThread extends Thread {
@@ -12,11 +19,22 @@ public class ConsoleThread extends Thread {
     private final ProcessManager processManager;
     private boolean running = true;
     private final Scanner scanner = new Scanner(System.in);
+    // continuacao do ultimo mdump paginado (comando "mais")
+    private int dumpNext = -1;
+    private int dumpEnd;
+    private int dumpFilter;
+    private int dumpLines;
+    private CompactionThread compactionThread;
+    private WorkingSetSampler workingSetSampler;
+    private MigrationServer migrationServer;
+    private CommandServer commandServer;
+    private final CommandProcessor commands;
 
     public ConsoleThread(Sistema sistema, Programs programs, ProcessManager processManager) {
         this.sistema = sistema;
         this.programs = programs;
         this.processManager = processManager;
+        this.commands = new CommandProcessor(sistema);
     }
 
     @Override
@@ -25,38 +43,49 @@ public class ConsoleThread extends Thread {
         while (running) {
             System.out.print("SisOps> ");
             String command = scanner.nextLine().trim();
-            String[] tokens = command.split(" ");
+            String[] tokens = command.split(" +");
 
             if (command.equals("exit")) {
                 exit();
             } else if (command.equals("help")) {
                 printHelp();
-            } else if (command.startsWith("list")) {
-                listPrograms();
-            } else if (command.startsWith("ps")) {
-                listProcesses();
-            } else if (command.startsWith("dump")) {
-                var parts = command.split(" ");
-                if (parts.length < 2) {
-                    System.out.println("Uso: dump <id_do_processo>");
-                    return;
+            } else if (commands.handles(tokens[0])) {
+                // comandos compartilhados com o servidor de comandos (list, cfg, ps, mem, exec, new, kill, dump, in, ipc, lat, group, groups, ws, heatmap)
+                String error = commands.execute(command, System.out);
+                if (error != null) {
+                    System.out.println(error);
                 }
-                dumpProcess(Integer.parseInt(parts[1]));
-            } else if (command.startsWith("mdump")) {
-                var parts = command.split(" ");
-                if (parts.length < 3) {
-                    System.out.println("Uso: mdump <inicio da memoria> <fim da memoria>");
-                    return;
-                }
-                dumpMemory(Integer.parseInt(parts[1]),Integer.parseInt(parts[2])) ;
-            } else if (command.startsWith("exec")) {
-                executeProgram(command);
-            } else if (command.equals("mem")) {
-                showMemory();
-            } else if (command.startsWith("kill")) {
-                killProcess(command);
-            } else if(tokens[0].equals("new")){
-                createProgram(tokens[1]);
+            } else if (tokens[0].equals("mdump")) {
+                dumpMemory(tokens);
+            } else if (command.equals("mais")) {
+                continueDump();
+            } else if (command.equals("msnap")) {
+                sistema.so.utils.dumper.snapshot();
+                System.out.println("Snapshot da memória registrado.");
+            } else if (tokens[0].equals("mdiff")) {
+                diffMemory(tokens);
+            } else if (tokens[0].equals("admit")) {
+                admissionLimits(tokens);
+            } else if (command.equals("compact")) {
+                processManager.compactMemory();
+            } else if (tokens[0].equals("compactd")) {
+                compactionDaemon(tokens);
+            } else if (tokens[0].equals("wsd")) {
+                workingSetDaemon(tokens);
+            } else if (tokens[0].equals("ciclos")) {
+                cycleCosts(tokens);
+            } else if (tokens[0].equals("cache")) {
+                cache(tokens);
+            } else if (tokens[0].equals("quantum")) {
+                cycleQuantum(tokens);
+            } else if (command.equals("irq")) {
+                sistema.so.ih.showCounters();
+            } else if (tokens[0].equals("listen")) {
+                migrationListen(tokens);
+            } else if (tokens[0].equals("migrate")) {
+                migrate(tokens);
+            } else if (tokens[0].equals("serve")) {
+                commandServer(tokens);
             } else if (command.equals("hacf")) {
                 processManager.startSchedulerThread();
             } else if (command.equals("schkill")) {
@@ -72,12 +101,35 @@ public class ConsoleThread extends Thread {
         System.out.println("Comandos disponíveis:");
         System.out.println("  help         - Mostra esta ajuda");
         System.out.println("  list         - Lista programas disponíveis");
-        System.out.println("  mdump[i,f]    - Faz o dump da memoria");
+        System.out.println("  cfg <prog>   - Análise estática: código/dados, laços, instruções no pior caso");
+        System.out.println("  mdump i f [-n|-d] [-p linhas] [> arq]");
+        System.out.println("               - Dump da memoria [i,f): -n só não vazias, -d só DATA,");
+        System.out.println("                 -p pagina a saida (continua com 'mais'), > grava em arquivo");
+        System.out.println("  msnap        - Guarda um snapshot da memoria");
+        System.out.println("  mdiff [i f]  - Mostra o que mudou desde o snapshot");
         System.out.println("  dump [pid]   - Faz o dump de um processo especificado");
-        System.out.println("  exec [prog]  - Executa um programa");
+        System.out.println("  exec [prog] [prio] [grupo] - Executa um programa (prioridade de admissão 0-9, 0 = mais alta)");
+        System.out.println("  admit <max> [fila] - Limite de processos ativos (0 = sem limite) e da fila de admissão");
         System.out.println("  ps           - Lista processos em execução");
         System.out.println("  mem          - Mostra estado da memória");
+        System.out.println("  compact      - Compacta os frames dos processos prontos");
+        System.out.println("  compactd <ms>|off - Liga/desliga a compactação periódica");
+        System.out.println("  wsd <ms> [janela]|off - Liga/desliga a amostragem do working set (janela em amostras)");
+        System.out.println("  ws           - Working set, frames ocupados e sujos por processo");
+        System.out.println("  heatmap <arq> - Grava o mapa de calor de acesso aos frames");
+        System.out.println("  irq          - Contadores de interrupções por fonte");
+        System.out.println("  ciclos [OPC=n,...] - Custo em ciclos de cada instrução e ciclos da CPU; altera custos");
+        System.out.println("  cache [tam/linha/vias[/lru|plru][,L2]|off] - Liga a cache (sem processos) ou mostra acertos/falhas");
+        System.out.println("  quantum <ciclos>|off - Fatia do escalonador em ciclos simulados (off = timer do hospedeiro)");
+        System.out.println("  lat          - Histogramas de latência de despacho, mensagens e semáforos/mutexes");
+        System.out.println("  ipc          - Segmentos compartilhados, filas de mensagens, semáforos e mutexes");
+        System.out.println("  group <nome> [peso=n] [frames=n] [ciclos=n] [acao=kill|pausa:ms] - Cria/ajusta grupo de processos");
+        System.out.println("  groups       - Grupos: peso, uso de CPU, frames e cotas");
         System.out.println("  kill [pid]   - Termina um processo");
+        System.out.println("  in <pid> <v> - Entrega o valor v a um processo bloqueado em leitura");
+        System.out.println("  listen <porta>|off - Recebe processos migrados de outra instância");
+        System.out.println("  migrate <pid> <porta> - Migra um processo pronto para a instância da porta");
+        System.out.println("  serve <porta>|off - Aceita comandos de clientes pela porta local (ver CommandClient)");
         System.out.println("  new <p>      - Cria um novo processo");
         System.out.println("  hacf         - Que os jogos começem");
         System.out.println("  schkill      - Derruba a thread de escalonamento ");
@@ -85,104 +137,272 @@ public class ConsoleThread extends Thread {
         System.out.println("=========================================");
     }
 
-    private void listPrograms() {
-        System.out.println("Programas disponíveis:");
-        for (int i = 0; i < programs.progs.length; i++) {
-            if (programs.progs[i] != null) {
-                System.out.println("  " + programs.progs[i].name);
+    // mdump <ini> <fim> [-n|-d] [-p linhas] [> arquivo]
+    private void dumpMemory(String[] tokens) {
+        if (tokens.length < 3) {
+            System.out.println("Uso: mdump <inicio da memoria> <fim da memoria> [-n|-d] [-p linhas] [> arquivo]");
+            return;
+        }
+        try {
+            int ini = Integer.parseInt(tokens[1]);
+            int fim = Integer.parseInt(tokens[2]);
+            int filter = MemoryDumper.ALL;
+            int lines = 0;
+            String file = null;
+            for (int k = 3; k < tokens.length; k++) {
+                if (tokens[k].equals("-n")) {
+                    filter = MemoryDumper.NON_EMPTY;
+                } else if (tokens[k].equals("-d")) {
+                    filter = MemoryDumper.DATA_ONLY;
+                } else if (tokens[k].equals("-p") && k + 1 < tokens.length) {
+                    lines = Integer.parseInt(tokens[++k]);
+                } else if (tokens[k].equals(">") && k + 1 < tokens.length) {
+                    file = tokens[++k];
+                }
+            }
+
+            if (file != null) {
+                int written = sistema.so.utils.dumper.dumpToFile(ini, fim, filter, Path.of(file));
+                System.out.println(written + " posições gravadas em " + file);
+                return;
             }
+            dumpEnd = fim;
+            dumpFilter = filter;
+            dumpLines = lines;
+            dumpNext = ini;
+            continueDump();
+        } catch (NumberFormatException e) {
+            System.out.println("Início, fim e linhas devem ser números inteiros.");
+        } catch (IOException e) {
+            System.out.println("Erro ao gravar o dump: " + e.getMessage());
         }
     }
 
-    private void dumpProcess(int processId) {
-        ProcessManager.PCB pcb = processManager.getProcess(processId);
-        if (pcb == null) {
-            System.out.println("Processo " + processId + " não encontrado");
+    private void continueDump() {
+        if (dumpNext < 0 || dumpNext >= dumpEnd) {
+            System.out.println("Nada mais para mostrar.");
+            dumpNext = -1;
             return;
         }
+        dumpNext = sistema.so.utils.dumper.dump(dumpNext, dumpEnd, dumpFilter, dumpLines);
+        if (dumpNext < dumpEnd && dumpLines > 0) {
+            System.out.println("-- 'mais' para continuar a partir de " + dumpNext + " --");
+        } else {
+            dumpNext = -1;
+        }
+    }
 
-        System.out.println("=== Dump do Processo " + processId + " ===");
-        System.out.println("Estado: " + pcb.state);
-        System.out.println("PC: " + pcb.pc);
+    private void diffMemory(String[] tokens) {
+        MemoryDumper dumper = sistema.so.utils.dumper;
+        if (!dumper.hasSnapshot()) {
+            System.out.println("Nenhum snapshot. Use 'msnap' antes.");
+            return;
+        }
+        try {
+            int ini = tokens.length >= 3 ? Integer.parseInt(tokens[1]) : 0;
+            int fim = tokens.length >= 3 ? Integer.parseInt(tokens[2]) : Integer.MAX_VALUE;
+            int changed = dumper.diff(ini, fim);
+            System.out.println(changed + " posições alteradas desde o snapshot.");
+        } catch (NumberFormatException e) {
+            System.out.println("Uso: mdiff [inicio fim]");
+        }
+    }
 
-        System.out.println("Registradores:");
-        for (int i = 0; i < pcb.registers.length; i++) {
-            System.out.println("R" + i + ": " + pcb.registers[i]);
+    private void admissionLimits(String[] tokens) {
+        if (tokens.length < 2 || tokens.length > 3) {
+            System.out.println("Uso: admit <max_ativos> [max_fila]");
+            return;
+        }
+        try {
+            int maxActive = Integer.parseInt(tokens[1]);
+            int maxQueued = tokens.length == 3 ? Integer.parseInt(tokens[2]) : 1024;
+            processManager.setAdmissionLimits(maxActive, maxQueued);
+            System.out.println("Admissão: até " + (maxActive > 0 ? maxActive : "ilimitados") + " ativos, fila de " + maxQueued);
+        } catch (NumberFormatException e) {
+            System.out.println("Limites devem ser números inteiros.");
         }
+    }
 
-        System.out.println("Páginas:");
-        for (Page page : pcb.pages) {
-            System.out.println("  Início: " + page.pageStart + ", Fim: " + page.pageEnd);
-            // Dump do conteúdo da memória para cada página
-            sistema.so.utils.dump(page.pageStart, page.pageEnd);
+    private void cycleCosts(String[] tokens) {
+        CPU cpu = sistema.hw.cpu;
+        if (tokens.length == 2) {
+            try {
+                cpu.getCycleCosts().parse(tokens[1]);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Uso: ciclos [OPC=n,OPC=n...]  (" + e.getMessage() + ")");
+                return;
+            }
         }
+        cpu.getCycleCosts().print(System.out);
+        System.out.println("Ciclos executados pela CPU: " + cpu.cycles);
     }
 
-    private void dumpMemory(int i, int f){
-        sistema.so.utils.dump(i,f);
+    private void cache(String[] tokens) {
+        if (tokens.length == 2) {
+            Cache cache;
+            try {
+                cache = tokens[1].equals("off") ? null : Cache.parse(tokens[1]);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Uso: cache tam/linha/vias[/lru|plru][,tam/linha/vias[/lru|plru]] | cache off  ("
+                        + e.getMessage() + ")");
+                return;
+            }
+            if (!processManager.setCache(cache)) {
+                System.out.println("A cache só pode ser trocada sem processos no sistema.");
+                return;
+            }
+        }
+        processManager.showCacheStats(System.out);
     }
 
-    private void executeProgram(String command) {
-        String[] parts = command.split(" ");
-        if (parts.length != 2) {
-            System.out.println("Uso: exec [nome_do_programa]");
+    private void cycleQuantum(String[] tokens) {
+        if (tokens.length != 2) {
+            System.out.println("Uso: quantum <ciclos> | quantum off");
             return;
         }
-
-        String programName = parts[1];
-        var program = programs.retrieveProgram(programName);
-
-        if (program == null) {
-            System.out.println("Programa não encontrado: " + programName);
+        try {
+            processManager.setCycleQuantum(tokens[1].equals("off") ? 0 : Long.parseLong(tokens[1]));
+        } catch (NumberFormatException e) {
+            System.out.println("Quantum inválido.");
             return;
         }
+        long q = processManager.getCycleQuantum();
+        System.out.println(q > 0 ? "Fatia de " + q + " ciclos simulados." : "Fatia pelo timer do hospedeiro.");
+    }
 
-        var pcb = processManager.createProcess(program);
-        if (pcb != null) {
-            System.out.println("Processo criado com PID: " + pcb.pid + " para o programa: " + programName);
-            processManager.startSchedulerThread();
-        } else {
-            System.out.println("Falha ao criar processo para o programa: " + programName);
+    private void compactionDaemon(String[] tokens) {
+        if (tokens.length != 2) {
+            System.out.println("Uso: compactd <intervalo_ms> | compactd off");
+            return;
+        }
+        if (compactionThread != null) {
+            compactionThread.stopCompaction();
+            compactionThread = null;
+        }
+        if (tokens[1].equals("off")) {
+            System.out.println("Compactação periódica desligada.");
+            return;
+        }
+        try {
+            compactionThread = new CompactionThread(processManager, Long.parseLong(tokens[1]));
+            compactionThread.start();
+            System.out.println("Compactação a cada " + tokens[1] + " ms.");
+        } catch (NumberFormatException e) {
+            System.out.println("Intervalo inválido.");
         }
     }
 
-    private void createProgram(String nome){
-        var newProgram = new Programs().retrieveProgram(nome);
-        if (newProgram == null) {
-            System.out.println("=== Programa não reconhecido pelo sistema ===");
+    private void workingSetDaemon(String[] tokens) {
+        if (tokens.length < 2 || tokens.length > 3) {
+            System.out.println("Uso: wsd <intervalo_ms> [janela] | wsd off");
             return;
         }
-        System.out.println("=== Criando Processo ===");
-        processManager.createProcess(newProgram);
+        if (workingSetSampler != null) {
+            workingSetSampler.stopSampler();
+            workingSetSampler = null;
+        }
+        if (tokens[1].equals("off")) {
+            System.out.println("Amostragem do working set desligada.");
+            return;
+        }
+        try {
+            long interval = Long.parseLong(tokens[1]);
+            if (tokens.length == 3) {
+                processManager.workingSet.setWindow(Integer.parseInt(tokens[2]));
+            }
+            workingSetSampler = new WorkingSetSampler(processManager, interval);
+            workingSetSampler.start();
+            System.out.println("Working set amostrado a cada " + interval + " ms, janela de "
+                    + processManager.workingSet.getWindow() + " amostras.");
+        } catch (NumberFormatException e) {
+            System.out.println("Intervalo inválido.");
+        }
     }
 
-    private void listProcesses() {
-        System.out.println("Processos em execução:");
-        processManager.listProcesses();
+    private void migrationListen(String[] tokens) {
+        if (tokens.length != 2) {
+            System.out.println("Uso: listen <porta> | listen off");
+            return;
+        }
+        if (migrationServer != null) {
+            migrationServer.stopServer();
+            migrationServer = null;
+        }
+        if (tokens[1].equals("off")) {
+            System.out.println("Recepção de migrações desligada.");
+            return;
+        }
+        try {
+            migrationServer = new MigrationServer(processManager, Integer.parseInt(tokens[1]));
+            migrationServer.start();
+            System.out.println("Recebendo migrações na porta " + migrationServer.getPort() + ".");
+        } catch (NumberFormatException e) {
+            System.out.println("Porta inválida.");
+        } catch (IOException e) {
+            System.out.println("Não foi possível abrir a porta: " + e.getMessage());
+        }
     }
 
-    private void showMemory() {
-        System.out.println("Estado da memória:");
-        processManager.showMemoryStatus();
+    private void migrate(String[] tokens) {
+        if (tokens.length != 3) {
+            System.out.println("Uso: migrate <pid> <porta>");
+            return;
+        }
+        int pid;
+        int port;
+        try {
+            pid = Integer.parseInt(tokens[1]);
+            port = Integer.parseInt(tokens[2]);
+        } catch (NumberFormatException e) {
+            System.out.println("PID ou porta inválidos.");
+            return;
+        }
+        byte[] blob = processManager.exportProcess(pid);
+        if (blob == null) {
+            System.out.println("Processo " + pid + " não pode migrar.");
+            return;
+        }
+        int remotePid = -1;
+        try {
+            remotePid = MigrationServer.send(blob, port);
+        } catch (IOException e) {
+            System.out.println("Falha ao enviar: " + e.getMessage());
+        }
+        if (remotePid >= 0) {
+            System.out.println("Processo " + pid + " migrado para a porta " + port + " como PID " + remotePid);
+            return;
+        }
+        // destino recusou ou nao respondeu: o processo volta para esta instancia
+        try {
+            if (processManager.importProcess(blob) == null) {
+                System.out.println("Processo " + pid + " perdido: destino recusou e esta instancia não o readmitiu.");
+            }
+        } catch (IOException e) {
+            System.out.println("Foto inválida: " + e.getMessage());
+        }
     }
 
-    private void killProcess(String command) {
-        String[] parts = command.split(" ");
-        if (parts.length != 2) {
-            System.out.println("Uso: kill [pid]");
+    private void commandServer(String[] tokens) {
+        if (tokens.length != 2) {
+            System.out.println("Uso: serve <porta> | serve off");
+            return;
+        }
+        if (commandServer != null) {
+            commandServer.stopServer();
+            commandServer = null;
+        }
+        if (tokens[1].equals("off")) {
+            System.out.println("Servidor de comandos desligado.");
             return;
         }
-
         try {
-            int pid = Integer.parseInt(parts[1]);
-            boolean success = processManager.killProcess(pid);
-            if (success) {
-                System.out.println("Processo com PID " + pid + " terminado com sucesso.");
-            } else {
-                System.out.println("Não foi possível terminar o processo com PID " + pid);
-            }
+            commandServer = new CommandServer(commands, Integer.parseInt(tokens[1]));
+            commandServer.start();
+            System.out.println("Aceitando comandos na porta " + commandServer.getPort() + ".");
         } catch (NumberFormatException e) {
-            System.out.println("PID inválido. Use um número inteiro.");
+            System.out.println("Porta inválida.");
+        } catch (IOException e) {
+            System.out.println("Não foi possível abrir a porta: " + e.getMessage());
         }
     }
 
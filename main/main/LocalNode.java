@@ -0,0 +1,69 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import Programs.Program;
+import Software.ProcessManager;
+
+// No do cluster rodando na propria JVM do coordenador, com seu proprio escalonador e memoria
+public class LocalNode implements ClusterNode {
+    private final String name;
+    final Sistema sistema;
+    private final ProcessManager pm;
+
+    public LocalNode(String name, int tamPag, int carriers) {
+        this(name, 1024, tamPag, carriers);
+    }
+
+    public LocalNode(String name, int tamMem, int tamPag, int carriers) {
+        this.name = name;
+        this.sistema = new Sistema(tamMem, tamPag);
+        sistema.hw.cpu.setDebug(false); // varios nos imprimindo cada instrucao so disputariam o console
+        pm = sistema.so.processManager;
+        if (carriers > 0) {
+            pm.useGuestThreads(carriers);
+        }
+        pm.startSchedulerThread();
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public int[] load() {
+        return new int[]{pm.runnableCount(), pm.freeWords(), pm.processCount()};
+    }
+
+    @Override
+    public int exec(String program, int priority) {
+        Program p = sistema.progs.retrieveProgram(program);
+        if (p == null) {
+            return -1;
+        }
+        ProcessManager.PCB pcb = pm.createProcess(p, priority);
+        return pcb == null ? -1 : pcb.pid;
+    }
+
+    @Override
+    public String ps() {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        pm.listProcesses(new PrintStream(buf, true, StandardCharsets.UTF_8));
+        return buf.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String mem() {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        pm.showMemoryStatus(new PrintStream(buf, true, StandardCharsets.UTF_8));
+        return buf.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void shutdown() {
+        pm.shutdownScheduler();
+    }
+}
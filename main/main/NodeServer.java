@@ -0,0 +1,62 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// Lado do no remoto: atende o coordenador por um protocolo de linhas no loopback.
+//   LOAD            -> "<trabalho> <palavras livres> <processos>"
+//   EXEC prog prio  -> "<pid>" (-1 = recusado)
+//   PS | MEM        -> texto, terminado por uma linha "."
+//   SHUTDOWN        -> encerra o no
+public class NodeServer {
+    private final LocalNode node;
+    private final ServerSocket server;
+
+    public NodeServer(LocalNode node, int port) throws IOException {
+        this.node = node;
+        this.server = new ServerSocket(port, 4, InetAddress.getLoopbackAddress());
+    }
+
+    public void serve() throws IOException {
+        while (true) {
+            try (Socket s = server.accept();
+                 BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] tokens = line.trim().split(" ");
+                    if (tokens[0].equals("LOAD")) {
+                        int[] load = node.load();
+                        out.println(load[0] + " " + load[1] + " " + load[2]);
+                    } else if (tokens[0].equals("EXEC") && tokens.length == 3) {
+                        out.println(node.exec(tokens[1], Integer.parseInt(tokens[2])));
+                    } else if (tokens[0].equals("PS")) {
+                        out.print(node.ps());
+                        out.println(".");
+                    } else if (tokens[0].equals("MEM")) {
+                        out.print(node.mem());
+                        out.println(".");
+                    } else if (tokens[0].equals("SHUTDOWN")) {
+                        node.shutdown();
+                        out.println("0");
+                        out.flush();
+                        server.close();
+                        return;
+                    } else {
+                        out.println("-1");
+                    }
+                    out.flush();
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Comando mal formado no no: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// No do cluster num processo filho (java main.Sistema --node <porta>), controlado por socket de
+// loopback. A saida do filho vai para um log em java.io.tmpdir.
+public class RemoteNode implements ClusterNode {
+    private final String name;
+    private final Process process;
+    private final Socket socket;
+    private final BufferedReader in;
+    private final PrintWriter out;
+
+    public RemoteNode(String name, int tamPag, int carriers) throws IOException {
+        this.name = name;
+        int port;
+        try (ServerSocket probe = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort(); // porta livre para o filho
+        }
+        List<String> cmd = new ArrayList<>();
+        cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add("main.Sistema");
+        cmd.add("--node");
+        cmd.add(Integer.toString(port));
+        cmd.add("--page");
+        cmd.add(Integer.toString(tamPag));
+        if (carriers > 0) {
+            cmd.add("--threads");
+            cmd.add(Integer.toString(carriers));
+        }
+        File log = new File(System.getProperty("java.io.tmpdir"), "sisops-" + name + ".log");
+        process = new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(log).start();
+        socket = connect(port);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+    }
+
+    // o filho leva um tempo para subir a JVM e abrir a porta
+    private Socket connect(int port) throws IOException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (true) {
+            try {
+                return new Socket(InetAddress.getLoopbackAddress(), port);
+            } catch (IOException e) {
+                if (!process.isAlive() || System.currentTimeMillis() > deadline) {
+                    process.destroy();
+                    throw new IOException("No " + name + " nao respondeu na porta " + port, e);
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrompido esperando o no " + name);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    private synchronized String request(String line) throws IOException {
+        out.println(line);
+        String reply = in.readLine();
+        if (reply == null) {
+            throw new IOException("No " + name + " fechou a conexao");
+        }
+        return reply;
+    }
+
+    private synchronized String requestText(String line) throws IOException {
+        out.println(line);
+        StringBuilder text = new StringBuilder();
+        String reply;
+        while ((reply = in.readLine()) != null && !reply.equals(".")) {
+            text.append(reply).append('\n');
+        }
+        return text.toString();
+    }
+
+    @Override
+    public int[] load() throws IOException {
+        String[] parts = request("LOAD").split(" ");
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+    }
+
+    @Override
+    public int exec(String program, int priority) throws IOException {
+        return Integer.parseInt(request("EXEC " + program + " " + priority));
+    }
+
+    @Override
+    public String ps() throws IOException {
+        return requestText("PS");
+    }
+
+    @Override
+    public String mem() throws IOException {
+        return requestText("MEM");
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            request("SHUTDOWN");
+            socket.close();
+        } catch (IOException e) {
+            // no ja caiu
+        }
+        process.destroy();
+    }
+}
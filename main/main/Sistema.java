@@ -11,8 +11,12 @@ public class Sistema {
     private ConsoleThread consoleThread;
 
     public Sistema(int tamMem) {
+        this(tamMem, 8);
+    }
+
+    public Sistema(int tamMem, int tamPag) {
         hw = new HW(tamMem);
-        so = new SO(hw);
+        so = new SO(hw, tamPag);
         hw.cpu.setUtilities(so.utils);
         progs = new Programs();
     }
@@ -35,7 +39,56 @@ public class Sistema {
     }
 
     public static void main(String args[]) {
-        Sistema s = new Sistema(1024);
+        int tamMem = 1024;
+        int tamPag = 8;
+        int hugeFrames = 0;
+        int carriers = 0;
+        int nodePort = -1;
+        long quantum = 0;
+        String costs = null;
+        String cache = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--mem")) {             // --mem n: palavras de memoria fisica (esparsa: so os frames usados ocupam o hospedeiro)
+                tamMem = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--page")) {            // --page n: tamanho da pagina em palavras
+                tamPag = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--huge")) {     // --huge f: paginas grandes de f frames
+                hugeFrames = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--threads")) {  // --threads [n]: cada processo roda em sua propria thread (virtual quando disponivel), n carriers
+                carriers = (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                        ? Integer.parseInt(args[++i]) : Runtime.getRuntime().availableProcessors();
+            } else if (args[i].equals("--quantum")) {  // --quantum c: fatia do escalonador em ciclos simulados
+                quantum = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--custos")) {   // --custos OPC=n,...: custo em ciclos das instrucoes
+                costs = args[++i];
+            } else if (args[i].equals("--cache")) {    // --cache tam/linha/vias[/lru|plru][,L2]: hierarquia de cache
+                cache = args[++i];
+            } else if (args[i].equals("--node")) {     // --node porta: no de cluster sem console, comandado pelo coordenador
+                nodePort = Integer.parseInt(args[++i]);
+            }
+        }
+        if (nodePort >= 0) {
+            try {
+                LocalNode node = new LocalNode("no-" + nodePort, tamMem, tamPag, carriers);
+                node.sistema.so.memoryManager.setHugePages(hugeFrames);
+                new NodeServer(node, nodePort).serve();
+            } catch (java.io.IOException e) {
+                System.err.println("No de cluster falhou: " + e.getMessage());
+            }
+            System.exit(0);
+        }
+        Sistema s = new Sistema(tamMem, tamPag);
+        s.so.memoryManager.setHugePages(hugeFrames);
+        s.so.processManager.setCycleQuantum(quantum);
+        if (costs != null) {
+            s.hw.cpu.getCycleCosts().parse(costs);
+        }
+        if (cache != null) {
+            s.so.processManager.setCache(Cache.parse(cache));
+        }
+        if (carriers > 0) {
+            s.so.processManager.useGuestThreads(carriers);
+        }
         s.run();
     }
 }
\ No newline at end of file